@@ -4,6 +4,8 @@ import org.bukkit.Bukkit;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.PluginManager;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.TickMetrics;
+import org.bukkit.scheduler.VirtualTicker;
 
 import java.io.File;
 import java.net.URI;
@@ -11,6 +13,17 @@ import java.net.URISyntaxException;
 
 public class Main {
 	public static void main(String[] args) throws URISyntaxException {
+		// Replays the given amount of ticks as fast as possible instead of ticking in real time
+		Long virtualTicks = Long.getLong("skript.virtual-ticks");
+		VirtualTicker virtualTicker = null;
+		if (virtualTicks != null) {
+			virtualTicker = new VirtualTicker();
+			Bukkit.setTicker(virtualTicker);
+		}
+
+		// Lets the asynchronous tasks in progress finish when the JVM exits
+		Runtime.getRuntime().addShutdownHook(new Thread(Bukkit::shutdown, "Shutdown"));
+
 		PluginManager pluginManager = Bukkit.getPluginManager();
 		pluginManager.loadPlugin(getFile());
 
@@ -18,6 +31,21 @@ public class Main {
 			plugin.setEnabled(true);
 			plugin.onEnable();
 		}
+
+		if (virtualTicker != null) {
+			// Make sure the scheduler is hooked up to the ticker, even if nothing has been scheduled yet
+			Bukkit.getScheduler();
+
+			long start = System.nanoTime();
+			virtualTicker.advance(virtualTicks);
+			double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+			TickMetrics metrics = virtualTicker.getMetrics();
+			Bukkit.getLogger().info(String.format(
+				"Ran %d virtual ticks in %.2f seconds (%.0f ticks per second, %.3f mspt, %.3f mspt at p99)",
+				virtualTicks, seconds, virtualTicks / seconds, metrics.getMspt(), metrics.getMsptPercentile(99)
+			));
+		}
 	}
 
 	private static File getFile() throws URISyntaxException {
@@ -194,6 +194,15 @@ public class SkriptConfig {
 	public static final Option<Boolean> caseInsensitiveVariables = new Option<>("case-insensitive variables", true)
 			.setter(t -> Variables.caseInsensitiveVariables = t);
 
+	public static final Option<Integer> variablePagingSize = new Option<>("variable paging size", 0)
+			.optional(true);
+
+	public static final Option<Integer> listValueIndexSize = new Option<>("list value index size", 0)
+			.optional(true);
+
+	public static final Option<Integer> variableLockStripes = new Option<>("variable lock stripes", 16)
+			.optional(true);
+
 	public static final Option<String> scriptLoaderThreadSize = new Option<>("script loader thread size", "0")
 			.setter(s -> {
 				int asyncLoaderSize;
@@ -18,7 +18,6 @@
  */
 package ch.njol.skript;
 
-import ch.njol.skript.lang.SkriptEvent;
 import ch.njol.skript.lang.Trigger;
 import ch.njol.skript.util.Task;
 import com.google.common.collect.ArrayListMultimap;
@@ -29,16 +28,16 @@ import org.bukkit.event.Event.Result;
 import org.bukkit.plugin.EventExecutor;
 import org.eclipse.jdt.annotation.Nullable;
 
-import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class SkriptEventHandler {
 
@@ -80,18 +79,56 @@ public final class SkriptEventHandler {
 	 */
 	private static final Multimap<Class<? extends Event>, Trigger> triggers = ArrayListMultimap.create();
 
+	/**
+	 * The Triggers to execute for each concrete Event class, indexed by {@link EventPriority#ordinal()}.
+	 * Entries are baked lazily by {@link #getTriggers(Class)} and the table is cleared whenever
+	 * {@link #triggers} changes, so dispatching an event only needs a single lookup.
+	 * Must only be modified while synchronized on {@link #triggers}.
+	 */
+	private static final Map<Class<? extends Event>, Trigger[][]> dispatchTable = new ConcurrentHashMap<>();
+
+	private static final Trigger[] NO_TRIGGERS = new Trigger[0];
+
 	/**
 	 * A utility method to get all Triggers registered under the provided Event class.
 	 * @param event The event to find pairs from.
-	 * @return A List containing all Triggers registered under the provided Event class.
+	 * @return The Triggers registered under the provided Event class, indexed by {@link EventPriority#ordinal()}.
+	 */
+	private static Trigger[][] getTriggers(Class<? extends Event> event) {
+		Trigger[][] eventTriggers = dispatchTable.get(event);
+		if (eventTriggers != null)
+			return eventTriggers;
+		synchronized (triggers) {
+			return dispatchTable.computeIfAbsent(event, SkriptEventHandler::bakeTriggers);
+		}
+	}
+
+	/**
+	 * Collects the Triggers registered under the provided Event class, grouped by their priority.
+	 * Must be called while synchronized on {@link #triggers}.
+	 * @param event The event to find pairs from.
+	 * @return The Triggers registered under the provided Event class, indexed by {@link EventPriority#ordinal()}.
 	 */
-	private static List<Trigger> getTriggers(Class<? extends Event> event) {
+	private static Trigger[][] bakeTriggers(Class<? extends Event> event) {
 		HandlerList eventHandlerList = getHandlerList(event);
 		assert eventHandlerList != null; // It had one at some point so this should remain true
-		return triggers.asMap().entrySet().stream()
-				.filter(entry -> entry.getKey().isAssignableFrom(event) && getHandlerList(entry.getKey()) == eventHandlerList)
-				.flatMap(entry -> entry.getValue().stream())
-				.collect(Collectors.toList()); // forces evaluation now and prevents us from having to call getTriggers again if very high logging is enabled
+
+		List<List<Trigger>> byPriority = new ArrayList<>(listeners.length);
+		for (int i = 0; i < listeners.length; i++)
+			byPriority.add(new ArrayList<>());
+		for (Entry<Class<? extends Event>, Collection<Trigger>> entry : triggers.asMap().entrySet()) {
+			if (!entry.getKey().isAssignableFrom(event) || getHandlerList(entry.getKey()) != eventHandlerList)
+				continue;
+			for (Trigger trigger : entry.getValue())
+				byPriority.get(trigger.getEvent().getEventPriority().ordinal()).add(trigger);
+		}
+
+		Trigger[][] baked = new Trigger[listeners.length][];
+		for (int i = 0; i < baked.length; i++) {
+			List<Trigger> priorityTriggers = byPriority.get(i);
+			baked[i] = priorityTriggers.isEmpty() ? NO_TRIGGERS : priorityTriggers.toArray(NO_TRIGGERS);
+		}
+		return baked;
 	}
 
 	/**
@@ -102,28 +139,21 @@ public final class SkriptEventHandler {
 	 * @param priority The priority of the Event.
 	 */
 	private static void check(Event event, EventPriority priority) {
-		// get all triggers for this event, return if none
-		List<Trigger> triggers = getTriggers(event.getClass());
-		if (triggers.isEmpty())
+		// get all triggers for this event at this priority, return if none
+		Trigger[] triggers = getTriggers(event.getClass())[priority.ordinal()];
+		if (triggers.length == 0)
 			return;
 
 		// Check if this event should be treated as cancelled
 		boolean isCancelled = isCancelled(event);
 
-		// This logs events even if there isn't a trigger that's going to run at that priority.
-		// However, there should only be a priority listener IF there's a trigger at that priority.
-		// So the time will be logged even if no triggers pass check(), which is still useful information.
+		// This logs events even if no trigger passes its check,
+		// which is still useful information.
 		logEventStart(event, priority);
 
 		for (Trigger trigger : triggers) {
-			SkriptEvent triggerEvent = trigger.getEvent();
-
-			// check if the trigger is at the right priority
-			if (triggerEvent.getEventPriority() != priority)
-				continue;
-
 			// check if the cancel state of the event is correct
-			if (!triggerEvent.getListeningBehavior().matches(isCancelled))
+			if (!trigger.getEvent().getListeningBehavior().matches(isCancelled))
 				continue;
 
 			// execute the trigger
@@ -277,7 +307,10 @@ public final class SkriptEventHandler {
 		if (handlerList == null)
 			return;
 
-		triggers.put(event, trigger);
+		synchronized (triggers) {
+			triggers.put(event, trigger);
+			dispatchTable.clear();
+		}
 
 		EventPriority priority = trigger.getEvent().getEventPriority();
 
@@ -292,6 +325,13 @@ public final class SkriptEventHandler {
 	 * @param trigger The Trigger to unregister events for.
 	 */
 	public static void unregisterBukkitEvents(Trigger trigger) {
+		synchronized (triggers) {
+			unregisterBukkitEvents_i(trigger);
+			dispatchTable.clear();
+		}
+	}
+
+	private static void unregisterBukkitEvents_i(Trigger trigger) {
 		Iterator<Entry<Class<? extends Event>, Trigger>> entryIterator = triggers.entries().iterator();
 		entryLoop: while (entryIterator.hasNext()) {
 			Entry<Class<? extends Event>, Trigger> entry = entryIterator.next();
@@ -335,57 +375,42 @@ public final class SkriptEventHandler {
 	public static final Set<Class<? extends Event>> listenCancelled = new HashSet<>();
 
 	/**
-	 * A cache for the getHandlerList methods of Event classes.
+	 * A cache for the HandlerLists of Event classes.
+	 * Reflection is only used the first time the HandlerList of a class is requested,
+	 * later lookups don't need to lock or invoke anything.
+	 * A class whose HandlerList can't be obtained maps to {@link #NO_HANDLER_LIST},
+	 * so the failure is only reported once.
 	 */
-	private static final Map<Class<? extends Event>, Method> handlerListMethods = new HashMap<>();
+	private static final ClassValue<Object> handlerLists = new ClassValue<Object>() {
+		@Override
+		protected Object computeValue(Class<?> eventClass) {
+			try {
+				Method method = getHandlerListMethod(eventClass.asSubclass(Event.class));
+				if (method == null)
+					throw new RuntimeException("No getHandlerList method found");
+				method.setAccessible(true);
+				return method.invoke(null);
+			} catch (Exception ex) {
+				//noinspection ThrowableNotThrown
+				Skript.exception(ex, "Failed to get HandlerList for event " + eventClass.getName());
+				return NO_HANDLER_LIST;
+			}
+		}
+	};
 
 	/**
-	 * A cache for obtained HandlerLists.
+	 * The value of {@link #handlerLists} for classes without a HandlerList.
 	 */
-	private static final Map<Method, WeakReference<HandlerList>> handlerListCache = new HashMap<>();
+	private static final Object NO_HANDLER_LIST = new Object();
 
 	@Nullable
 	private static HandlerList getHandlerList(Class<? extends Event> eventClass) {
-		try {
-			Method method = getHandlerListMethod(eventClass);
-
-			WeakReference<HandlerList> handlerListReference = handlerListCache.get(method);
-			HandlerList handlerList = handlerListReference != null ? handlerListReference.get() : null;
-			if (handlerList == null) {
-				method.setAccessible(true);
-				handlerList = (HandlerList) method.invoke(null);
-				handlerListCache.put(method, new WeakReference<>(handlerList));
-			}
-
-			return handlerList;
-		} catch (Exception ex) {
-			//noinspection ThrowableNotThrown
-			Skript.exception(ex, "Failed to get HandlerList for event " + eventClass.getName());
-			return null;
-		}
-	}
-
-	private static Method getHandlerListMethod(Class<? extends Event> eventClass) {
-		Method method;
-
-		synchronized (handlerListMethods) {
-			method = handlerListMethods.get(eventClass);
-			if (method == null) {
-				method = getHandlerListMethod_i(eventClass);
-				if (method != null)
-					method.setAccessible(true);
-				handlerListMethods.put(eventClass, method);
-			}
-		}
-
-		if (method == null)
-			throw new RuntimeException("No getHandlerList method found");
-
-		return method;
+		Object handlerList = handlerLists.get(eventClass);
+		return handlerList instanceof HandlerList ? (HandlerList) handlerList : null;
 	}
 
 	@Nullable
-	private static Method getHandlerListMethod_i(Class<? extends Event> eventClass) {
+	private static Method getHandlerListMethod(Class<? extends Event> eventClass) {
 		try {
 			return eventClass.getDeclaredMethod("getHandlerList");
 		} catch (NoSuchMethodException e) {
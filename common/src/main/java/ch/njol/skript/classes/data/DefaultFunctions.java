@@ -32,6 +32,7 @@ import ch.njol.util.StringUtils;
 import ch.njol.util.coll.CollectionUtils;
 import org.eclipse.jdt.annotation.Nullable;
 import ch.njol.skript.util.Contract;
+import org.bukkit.Bukkit;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -431,6 +432,36 @@ public class DefaultFunctions {
 				"concat(\"foo \", 100, \" bar\") # foo 100 bar"
 			).since("2.9.0");
 
+		Functions.registerFunction(new SimpleJavaFunction<Number>("tps", new Parameter[0], DefaultClasses.NUMBER, true) {
+			@Override
+			public Number[] executeSimple(Object[][] params) {
+				return new Number[] {Bukkit.getTicker().getMetrics().getTps()};
+			}
+		}).description("Returns the ticks per second of the server, averaged over the last minute.")
+			.examples("if tps() < 18:", "\tbroadcast \"The server is lagging!\"")
+			.since("2.9.0");
+
+		Functions.registerFunction(new SimpleJavaFunction<Number>("mspt", new Parameter[0], DefaultClasses.NUMBER, true) {
+			@Override
+			public Number[] executeSimple(Object[][] params) {
+				return new Number[] {Bukkit.getTicker().getMetrics().getMspt()};
+			}
+		}).description("Returns how many milliseconds a server tick took on average over the last minute.")
+			.examples("if mspt() > 50:", "\tbroadcast \"Ticks are taking too long!\"")
+			.since("2.9.0");
+
+		Functions.registerFunction(new SimpleJavaFunction<Number>("msptPercentile", new Parameter[] {
+			new Parameter<>("percentile", DefaultClasses.NUMBER, true, null)
+		}, DefaultClasses.NUMBER, true) {
+			@Override
+			public Number[] executeSimple(Object[][] params) {
+				double percentile = ((Number) params[0][0]).doubleValue();
+				return new Number[] {Bukkit.getTicker().getMetrics().getMsptPercentile(percentile)};
+			}
+		}).description("Returns how many milliseconds a server tick took at the given percentile (0 to 100) of the ticks of the last minute.")
+			.examples("msptPercentile(50) # median", "msptPercentile(99) # the slowest ticks")
+			.since("2.9.0");
+
 	}
 	
 }
@@ -86,7 +86,7 @@ public class Delay extends Effect {
 				return null;
 
 			// Back up local variables
-			Object localVars = Variables.removeLocals(event);
+			Object localVars = Variables.removeLocalVariables(event);
 
 			Bukkit.getScheduler().scheduleSyncDelayedTask(Skript.getInstance(), () -> {
 				Skript.debug(getIndentation() + "... continuing after " + (System.nanoTime() - start) / 1_000_000_000. + "s");
@@ -96,7 +96,7 @@ public class Delay extends Effect {
 					Variables.setLocalVariables(event, localVars);
 
 				TriggerItem.walk(next, event);
-				Variables.removeLocals(event); // Clean up local vars, we may be exiting now
+				Variables.removeLocalVariables(event); // Clean up local vars, we may be exiting now
 			}, Math.max(duration.getTicks(), 1)); // Minimum delay is one tick, less than it is useless!
 		}
 		return null;
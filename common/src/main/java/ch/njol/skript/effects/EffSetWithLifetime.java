@@ -0,0 +1,91 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.effects;
+
+import ch.njol.skript.Skript;
+import ch.njol.skript.doc.Description;
+import ch.njol.skript.doc.Examples;
+import ch.njol.skript.doc.Name;
+import ch.njol.skript.doc.Since;
+import ch.njol.skript.lang.Effect;
+import ch.njol.skript.lang.Expression;
+import ch.njol.skript.lang.SkriptParser.ParseResult;
+import ch.njol.skript.lang.Variable;
+import ch.njol.skript.util.Timespan;
+import ch.njol.util.Kleenean;
+import org.bukkit.event.Event;
+import org.eclipse.jdt.annotation.Nullable;
+
+@Name("Set With Lifetime")
+@Description({
+	"Sets a global variable to a value that is deleted again after the given time, e.g. for a cooldown, " +
+		"so scripts don't have to loop through such variables to delete the old ones.",
+	"Setting or deleting the variable again before the time is over cancels its deletion. " +
+		"The lifetime isn't saved, so a variable that was saved isn't deleted after a restart until it's set with a lifetime again."
+})
+@Examples({
+	"on right click:",
+	"\tif {cooldown::%player's uuid%} is set:",
+	"\t\tsend \"You have to wait a bit!\" to player",
+	"\t\tstop",
+	"\tset {cooldown::%player's uuid%} to true for 10 seconds"
+})
+@Since("2.9.0")
+public class EffSetWithLifetime extends Effect {
+
+	static {
+		Skript.registerEffect(EffSetWithLifetime.class, "set %~object% to %object% for %timespan%");
+	}
+
+	@SuppressWarnings("NotNullFieldNotInitialized")
+	private Variable<?> variable;
+	@SuppressWarnings("NotNullFieldNotInitialized")
+	private Expression<?> value;
+	@SuppressWarnings("NotNullFieldNotInitialized")
+	private Expression<Timespan> lifetime;
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public boolean init(Expression<?>[] exprs, int matchedPattern, Kleenean isDelayed, ParseResult parseResult) {
+		if (!(exprs[0] instanceof Variable) || ((Variable<?>) exprs[0]).isLocal() || ((Variable<?>) exprs[0]).isList()) {
+			Skript.error("Only a single global variable can be set for a time");
+			return false;
+		}
+		variable = (Variable<?>) exprs[0];
+		value = exprs[1];
+		lifetime = (Expression<Timespan>) exprs[2];
+		return true;
+	}
+
+	@Override
+	protected void execute(Event event) {
+		Object value = this.value.getSingle(event);
+		Timespan lifetime = this.lifetime.getSingle(event);
+		if (value == null || lifetime == null)
+			return;
+		variable.set(event, value, lifetime);
+	}
+
+	@Override
+	public String toString(@Nullable Event event, boolean debug) {
+		return "set " + variable.toString(event, debug) + " to " + value.toString(event, debug) +
+			" for " + lifetime.toString(event, debug);
+	}
+
+}
@@ -22,11 +22,11 @@ import java.lang.reflect.Array;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NoSuchElementException;
-import java.util.TreeMap;
 
 import ch.njol.skript.Skript;
 import ch.njol.skript.SkriptAPIException;
@@ -44,21 +44,21 @@ import ch.njol.skript.lang.util.SimpleExpression;
 import ch.njol.skript.registrations.Classes;
 import ch.njol.skript.structures.StructVariables.DefaultVariables;
 import ch.njol.skript.util.StringMode;
+import ch.njol.skript.util.Timespan;
 import ch.njol.skript.util.Utils;
 import ch.njol.skript.variables.TypeHints;
+import ch.njol.skript.variables.VariableSlots;
 import ch.njol.skript.variables.Variables;
 import ch.njol.util.Checker;
 import ch.njol.util.Kleenean;
+import ch.njol.util.NonNullPair;
 import ch.njol.util.Pair;
 import ch.njol.util.StringUtils;
 import ch.njol.util.coll.CollectionUtils;
-import ch.njol.util.coll.iterator.EmptyIterator;
 import ch.njol.util.coll.iterator.SingleItemIterator;
 import org.bukkit.Bukkit;
 import org.bukkit.event.Event;
 import org.eclipse.jdt.annotation.Nullable;
-import org.skriptlang.skript.lang.comparator.Comparators;
-import org.skriptlang.skript.lang.comparator.Relation;
 import org.skriptlang.skript.lang.converter.Converters;
 import org.skriptlang.skript.lang.script.Script;
 import org.skriptlang.skript.lang.script.ScriptWarning;
@@ -89,6 +89,36 @@ public class Variable<T> implements Expression<T> {
 	@Nullable
 	private final Variable<?> source;
 
+	/**
+	 * The slots of the structure this local variable was parsed in,
+	 * {@code null} if this variable isn't accessed by {@link #slot}.
+	 */
+	@Nullable
+	private final VariableSlots slots;
+	private final int slot;
+
+	/**
+	 * The parts of the name of this variable, if the name is constant
+	 * and this variable isn't accessed by {@link #slot}.
+	 */
+	private final String @Nullable [] path;
+
+	/**
+	 * For a name starting with constant parts, e.g. {@code {kills::%player%}},
+	 * the parts of that start, and the length of it including the separator after it.
+	 */
+	private final String @Nullable [] prefixPath;
+	private final int prefixLength;
+
+	/**
+	 * For a list variable with a constant name, the indices last read by {@link #get(Event)}
+	 * and the names built from them, reused while the list doesn't change.
+	 * The names are shared between reads, so they must never be modified; callers get a copy,
+	 * see {@link #getConvertedArray(Event)}.
+	 */
+	@Nullable
+	private volatile NonNullPair<String[], Object[]> cachedNames;
+
 	@SuppressWarnings("unchecked")
 	private Variable(VariableString name, Class<? extends T>[] types, boolean local, boolean list, @Nullable Variable<?> source) {
 		assert types.length > 0;
@@ -108,6 +138,37 @@ public class Variable<T> implements Expression<T> {
 		this.superType = (Class<T>) Utils.getSuperType(types);
 
 		this.source = source;
+
+		if (source != null) {
+			this.slots = source.slots;
+			this.slot = source.slot;
+			this.path = source.path;
+			this.prefixPath = source.prefixPath;
+			this.prefixLength = source.prefixLength;
+			return;
+		}
+
+		// Constant local variable names are accessed by slot
+		VariableSlots slots = local && !list && name.isSimple() ? VariableSlots.current() : null;
+		int slot = slots == null ? -1 : slots.getSlot(name.toString(null));
+		this.slots = slot == -1 ? null : slots;
+		this.slot = slot;
+
+		// Other constant names (or parts of them) are split only once
+		String leadingText = name.getLeadingText();
+		if (name.isSimple()) {
+			this.path = slot == -1 ? Variables.toVariablePath(leadingText) : null;
+			this.prefixPath = null;
+			this.prefixLength = 0;
+		} else {
+			// The constant part ends at the last separator, in the order the name is split
+			int end = -1;
+			for (int i = leadingText.indexOf(SEPARATOR); i != -1; i = leadingText.indexOf(SEPARATOR, i + SEPARATOR.length()))
+				end = i;
+			this.path = null;
+			this.prefixPath = end > 0 ? Variables.toVariablePath(leadingText.substring(0, end)) : null;
+			this.prefixLength = end > 0 ? end + SEPARATOR.length() : 0;
+		}
 	}
 
 	/**
@@ -292,6 +353,18 @@ public class Variable<T> implements Expression<T> {
 	 */
 	@Nullable
 	public Object getRaw(Event event) {
+		if (slots != null || path != null) {
+			// A constant name doesn't need to be built, nor does it add type hints for default variables
+			Object value = slots != null ? Variables.getLocalVariable(event, slots, slot) : Variables.getVariable(path, event, local);
+			if (value != null || script == null)
+				return value;
+
+			DefaultVariables data = script.getData(DefaultVariables.class);
+			if (data == null || !data.hasDefaultVariables())
+				return null;
+			return getDefaultVariable(name.toString(event), event);
+		}
+
 		DefaultVariables data = script == null ? null : script.getData(DefaultVariables.class);
 		if (data != null)
 			data.enterScope();
@@ -301,7 +374,9 @@ public class Variable<T> implements Expression<T> {
 			// prevents e.g. {%expr%} where "%expr%" ends with "::*" from returning a Map
 			if (name.endsWith(Variable.SEPARATOR + "*") != list)
 				return null;
-			Object value = Variables.getVariable(name, event, local);
+			Object value = prefixPath != null
+				? Variables.getVariable(Variables.toVariablePath(prefixPath, name.substring(prefixLength)), event, local)
+				: Variables.getVariable(name, event, local);
 			if (value != null)
 				return value;
 
@@ -309,18 +384,32 @@ public class Variable<T> implements Expression<T> {
 			if (data == null || !data.hasDefaultVariables())
 				return null;
 
-			for (String typeHint : this.name.getDefaultVariableNames(name, event)) {
-				value = Variables.getVariable(typeHint, event, false);
-				if (value != null)
-					return value;
-			}
+			return getDefaultVariable(name, event);
 		} finally {
 			if (data != null)
 				data.exitScope();
 		}
+	}
+
+	/**
+	 * @param name the name of this variable.
+	 * @return the value of the first default variable for this variable that is set.
+	 */
+	@Nullable
+	private Object getDefaultVariable(String name, Event event) {
+		for (String typeHint : this.name.getDefaultVariableNames(name, event)) {
+			Object value = Variables.getVariable(typeHint, event, false);
+			if (value != null)
+				return value;
+		}
 		return null;
 	}
 
+	/**
+	 * @return the value of this variable, or the names of the entries of this list variable.
+	 * For a list variable with a constant name, the array of names is shared between calls
+	 * while the list doesn't change, and must not be modified.
+	 */
 	@Nullable
 	@SuppressWarnings("unchecked")
 	private Object get(Event event) {
@@ -329,62 +418,53 @@ public class Variable<T> implements Expression<T> {
 			return rawValue;
 		if (rawValue == null)
 			return Array.newInstance(types[0], 0);
-		List<Object> convertedValues = new ArrayList<>();
+		String[] indices = Variables.getListIndices((Map<String, ?>) rawValue);
+		NonNullPair<String[], Object[]> cachedNames = this.cachedNames;
+		if (cachedNames != null && cachedNames.getFirst() == indices)
+			return cachedNames.getSecond();
+
 		String name = StringUtils.substring(this.name.toString(event), 0, -1);
-		for (Entry<String, ?> variable : ((Map<String, ?>) rawValue).entrySet()) {
-			if (variable.getKey() != null && variable.getValue() != null) {
-				Object value;
-				if (variable.getValue() instanceof Map)
-					value = ((Map<String, ?>) variable.getValue()).get(null);
-				else
-					value = variable.getValue();
-				if (value != null)
-					convertedValues.add(name + variable.getKey());
-			}
-		}
-		return convertedValues.toArray();
+		Object[] names = new Object[indices.length];
+		for (int i = 0; i < indices.length; i++)
+			names[i] = name + indices[i];
+		if (path == null)
+			return names;
+		this.cachedNames = new NonNullPair<>(indices, names);
+		return names;
+	}
+
+	/**
+	 * @return the indices of this list variable, see {@link Variables#getListIndices(Map)}.
+	 */
+	@SuppressWarnings("unchecked")
+	private String[] getIndices(Event event, String name) {
+		Object value = path != null ? Variables.getVariable(path, event, local) : Variables.getVariable(name + "*", event, local);
+		if (value == null)
+			return new String[0];
+		assert value instanceof Map;
+		return Variables.getListIndices((Map<String, ?>) value);
 	}
 
 	public Iterator<Pair<String, Object>> variablesIterator(Event event) {
 		if (!list)
 			throw new SkriptAPIException("Looping a non-list variable");
 		String name = StringUtils.substring(this.name.toString(event), 0, -1);
-		Object val = Variables.getVariable(name + "*", event, local);
-		if (val == null)
-			return new EmptyIterator<>();
-		assert val instanceof TreeMap;
-		// temporary list to prevent CMEs
-		@SuppressWarnings("unchecked")
-		Iterator<String> keys = new ArrayList<>(((Map<String, Object>) val).keySet()).iterator();
+		// the indices don't change once read, so changing the list while looping is fine
+		String[] indices = getIndices(event, name);
 		return new Iterator<Pair<String, Object>>() {
-			@Nullable
-			private String key;
-			@Nullable
-			private Object next = null;
+			private int index;
 
 			@Override
 			public boolean hasNext() {
-				if (next != null)
-					return true;
-				while (keys.hasNext()) {
-					key = keys.next();
-					if (key != null) {
-						next = name + key;
-						if (next != null && !(next instanceof TreeMap))
-							return true;
-					}
-				}
-				next = null;
-				return false;
+				return index < indices.length;
 			}
 
 			@Override
 			public Pair<String, Object> next() {
 				if (!hasNext())
 					throw new NoSuchElementException();
-				Pair<String, Object> n = new Pair<>(key, next);
-				next = null;
-				return n;
+				String key = indices[index++];
+				return new Pair<>(key, name + key);
 			}
 
 			@Override
@@ -403,44 +483,20 @@ public class Variable<T> implements Expression<T> {
 			return value != null ? new SingleItemIterator<>(value) : null;
 		}
 		String name = StringUtils.substring(this.name.toString(event), 0, -1);
-		Object value = Variables.getVariable(name + "*", event, local);
-		if (value == null)
-			return new EmptyIterator<>();
-		assert value instanceof TreeMap;
-		// temporary list to prevent CMEs
-		Iterator<String> keys = new ArrayList<>(((Map<String, Object>) value).keySet()).iterator();
+		String[] indices = getIndices(event, name);
 		return new Iterator<T>() {
-			@Nullable
-			private String key;
-			@Nullable
-			private T next = null;
+			private int index;
 
 			@Override
-			@SuppressWarnings({"unchecked"})
 			public boolean hasNext() {
-				if (next != null)
-					return true;
-				while (keys.hasNext()) {
-					key = keys.next();
-					if (key != null) {
-						next = Converters.convert(Variables.getVariable(name + key, event, local), types);
-						next = (T) (name + key);
-						if (next != null && !(next instanceof TreeMap))
-							return true;
-					}
-				}
-				next = null;
-				return false;
+				return index < indices.length;
 			}
 
 			@Override
 			public T next() {
 				if (!hasNext())
 					throw new NoSuchElementException();
-				T n = next;
-				assert n != null;
-				next = null;
-				return n;
+				return (T) (name + indices[index++]);
 			}
 
 			@Override
@@ -458,11 +514,58 @@ public class Variable<T> implements Expression<T> {
 
 	private T[] getConvertedArray(Event event) {
 		assert list;
-		return Converters.convert((Object[]) get(event), types, superType);
+		Object[] values = (Object[]) get(event);
+		T[] converted = Converters.convert(values, types, superType);
+		// The cached names are returned as they are if no conversion is needed, but callers may modify their array
+		return converted == values ? converted.clone() : converted;
 	}
 
 	private void set(Event event, @Nullable Object value) {
-		Variables.setVariable("" + name.toString(event), value, event, local);
+		if (slots != null) {
+			Variables.setLocalVariable(event, slots, slot, value);
+		} else if (path != null) {
+			Variables.setVariable(path, value, event, local);
+		} else {
+			Variables.setVariable("" + name.toString(event), value, event, local);
+		}
+	}
+
+	/**
+	 * @return the parts of the name of this variable, see {@link Variables#toVariablePath(String)}.
+	 */
+	private String[] getPath(Event event) {
+		if (path != null)
+			return path;
+		String name = this.name.toString(event);
+		return prefixPath != null ? Variables.toVariablePath(prefixPath, name.substring(prefixLength)) : Variables.toVariablePath(name);
+	}
+
+	/**
+	 * Applies the given arithmetic operator with each of the given values to a value.
+	 *
+	 * @param operator the operator.
+	 * @param value the value, {@code null} to start from the default value of the operation.
+	 * @param delta the values to apply the operator with.
+	 * @return the result, or {@code null} if no operation could be applied.
+	 */
+	@Nullable
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static Object calculate(Operator operator, @Nullable Object value, Object[] delta) {
+		Class<?> clazz = value == null ? null : value.getClass();
+		boolean changed = false;
+		for (Object newValue : delta) {
+			OperationInfo info = Arithmetics.getOperationInfo(operator, clazz != null ? (Class) clazz : newValue.getClass(), newValue.getClass());
+			if (info == null)
+				continue;
+
+			Object left = value == null ? Arithmetics.getDefaultValue(info.getLeft()) : value;
+			if (left == null)
+				continue;
+
+			value = info.getOperation().calculate(left, newValue);
+			changed = true;
+		}
+		return changed ? value : null;
 	}
 
 	private void setIndex(Event event, String index, @Nullable Object value) {
@@ -472,6 +575,19 @@ public class Variable<T> implements Expression<T> {
 		Variables.setVariable(name.substring(0, name.length() - 1) + index, value, event, local);
 	}
 
+	/**
+	 * Sets this global variable to a value that is deleted again after the given time,
+	 * see {@link Variables#setVariable(String[], Object, Timespan)}.
+	 *
+	 * @param event the event.
+	 * @param value the new value.
+	 * @param lifetime the time after which the variable is deleted.
+	 */
+	public void set(Event event, Object value, Timespan lifetime) {
+		assert !list && !local : this;
+		Variables.setVariable(getPath(event), value, lifetime);
+	}
+
 	@Override
 	public Class<?>[] acceptChange(ChangeMode mode) {
 		if (!list && mode == ChangeMode.SET)
@@ -484,7 +600,11 @@ public class Variable<T> implements Expression<T> {
 	public void change(Event event, @Nullable Object[] delta, ChangeMode mode) throws UnsupportedOperationException {
 		switch (mode) {
 			case DELETE:
-				if (list) {
+				if (list && !local) {
+					// Deleted as a whole, which is saved as a single change
+					Variables.deleteSubtree(getPath(event));
+					break;
+				} else if (list) {
 					ArrayList<String> toDelete = new ArrayList<>();
 					Map<String, Object> map = (Map<String, Object>) getRaw(event);
 					if (map == null)
@@ -504,7 +624,21 @@ public class Variable<T> implements Expression<T> {
 				break;
 			case SET:
 				assert delta != null;
-				if (list) {
+				if (list && !local) {
+					Map<String, Object> entries = new LinkedHashMap<>();
+					int i = 1;
+					for (Object value : delta) {
+						if (value instanceof Object[]) {
+							for (int j = 0; j < ((Object[]) value).length; j++)
+								entries.put("" + i + SEPARATOR + (j + 1), ((Object[]) value)[j]);
+						} else {
+							entries.put("" + i, value);
+						}
+						i++;
+					}
+					// Replaced at once, so the list is never seen half set
+					Variables.replaceSubtree(getPath(event), entries);
+				} else if (list) {
 					set(event, null);
 					int i = 1;
 					for (Object value : delta) {
@@ -544,53 +678,35 @@ public class Variable<T> implements Expression<T> {
 			case REMOVE:
 			case REMOVE_ALL:
 				assert delta != null;
-				if (list) {
+				if (list && mode == ChangeMode.ADD) {
+					Variables.appendToList(getPath(event), delta, event, local);
+				} else if (list) {
 					Map<String, Object> map = (Map<String, Object>) getRaw(event);
 					if (mode == ChangeMode.REMOVE) {
 						if (map == null)
 							return;
 						ArrayList<String> toRemove = new ArrayList<>(); // prevents CMEs
 						for (Object value : delta) {
-							for (Entry<String, Object> entry : map.entrySet()) {
-								if (Relation.EQUAL.isImpliedBy(Comparators.compare(entry.getValue(), value))) {
-									String key = entry.getKey();
-									if (key == null)
-										continue; // This is NOT a part of list variable
-
-									// Otherwise, we'll mark that key to be set to null
-									toRemove.add(key);
-									break;
-								}
-							}
+							// Only the first matching index is removed for each value
+							List<String> indices = Variables.findIndices(map, value, false);
+							if (!indices.isEmpty())
+								toRemove.add(indices.get(0));
 						}
 						for (String index : toRemove) {
 							assert index != null;
 							setIndex(event, index, null);
 						}
-					} else if (mode == ChangeMode.REMOVE_ALL) {
+					} else {
+						assert mode == ChangeMode.REMOVE_ALL;
 						if (map == null)
 							return;
 						ArrayList<String> toRemove = new ArrayList<>(); // prevents CMEs
-						for (Entry<String, Object> i : map.entrySet()) {
-							for (Object value : delta) {
-								if (Relation.EQUAL.isImpliedBy(Comparators.compare(i.getValue(), value)))
-									toRemove.add(i.getKey());
-							}
-						}
+						for (Object value : delta)
+							toRemove.addAll(Variables.findIndices(map, value, true));
 						for (String index : toRemove) {
 							assert index != null;
 							setIndex(event, index, null);
 						}
-					} else {
-						assert mode == ChangeMode.ADD;
-						int i = 1;
-						for (Object value : delta) {
-							if (map != null)
-								while (map.containsKey("" + i))
-									i++;
-							setIndex(event, "" + i, value);
-							i++;
-						}
 					}
 				} else {
 					Object originalValue = get(event);
@@ -599,21 +715,18 @@ public class Variable<T> implements Expression<T> {
 					Changer<?> changer;
 					Class<?>[] classes;
 					if (clazz == null || !Arithmetics.getOperations(operator, clazz).isEmpty()) {
-						boolean changed = false;
-						for (Object newValue : delta) {
-							OperationInfo info = Arithmetics.getOperationInfo(operator, clazz != null ? (Class) clazz : newValue.getClass(), newValue.getClass());
-							if (info == null)
-								continue;
-
-							Object value = originalValue == null ? Arithmetics.getDefaultValue(info.getLeft()) : originalValue;
-							if (value == null)
-								continue;
-
-							originalValue = info.getOperation().calculate(value, newValue);
-							changed = true;
+						if (slots != null) {
+							Object value = calculate(operator, originalValue, delta);
+							if (value != null)
+								set(event, value);
+						} else {
+							// Calculate from the current value in the same step as setting the result,
+							// so concurrent changes of the variable aren't lost
+							Variables.compute(getPath(event), value -> {
+								Object newValue = calculate(operator, value != null ? value : getRaw(event), delta);
+								return newValue != null ? newValue : value;
+							}, event, local);
 						}
-						if (changed)
-							set(event, originalValue);
 					} else if ((changer = Classes.getSuperClassInfo(clazz).getChanger()) != null && (classes = changer.acceptChange(mode)) != null) {
 						Object[] originalValueArray = (Object[]) Array.newInstance(originalValue.getClass(), 1);
 						originalValueArray[0] = originalValue;
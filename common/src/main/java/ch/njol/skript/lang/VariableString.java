@@ -502,6 +502,19 @@ public class VariableString implements Expression<String> {
 		return isSimple;
 	}
 
+	/**
+	 * @return the text this string starts with, before its first expression.
+	 * For a simple string, this is the whole string.
+	 */
+	String getLeadingText() {
+		if (isSimple) {
+			assert simple != null;
+			return simple;
+		}
+		assert strings != null;
+		return strings.length > 0 && strings[0] instanceof String ? (String) strings[0] : "";
+	}
+
 	public StringMode getMode() {
 		return mode;
 	}
@@ -29,12 +29,16 @@ import org.eclipse.jdt.annotation.Nullable;
 import ch.njol.skript.config.SectionNode;
 import ch.njol.skript.lang.Trigger;
 import ch.njol.skript.lang.util.SimpleEvent;
+import ch.njol.skript.variables.VariableSlots;
 import ch.njol.skript.variables.Variables;
 
 public class ScriptFunction<T> extends Function<T> implements ReturnHandler<T> {
 
 	private final Trigger trigger;
 
+	@Nullable
+	private final VariableSlots slots;
+
 	private boolean returnValueSet;
 	private T @Nullable [] returnValues;
 
@@ -49,6 +53,7 @@ public class ScriptFunction<T> extends Function<T> implements ReturnHandler<T> {
 	public ScriptFunction(Signature<T> sign, SectionNode node) {
 		super(sign);
 
+		slots = VariableSlots.current();
 		Functions.currentFunction = this;
 		try {
 			trigger = loadReturnableTrigger(node, "function " + sign.getName(), new SimpleEvent());
@@ -62,6 +67,9 @@ public class ScriptFunction<T> extends Function<T> implements ReturnHandler<T> {
 	// REM: use patterns, e.g. {_a%b%} is like "a.*", and thus subsequent {_axyz} may be set and of that type.
 	@Override
 	public T @Nullable [] execute(final FunctionEvent<?> e, final Object[][] params) {
+		if (slots != null)
+			Variables.createLocals(e, slots);
+
 		Parameter<?>[] parameters = getSignature().getParameters();
 		for (int i = 0; i < parameters.length; i++) {
 			Parameter<?> p = parameters[i];
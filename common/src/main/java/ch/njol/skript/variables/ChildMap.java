@@ -0,0 +1,285 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The children of a {@link VariableNode}, stored as a hash array mapped trie.
+ * <p>
+ * A map is only modified in place if it is owned by the edit token given
+ * to a modifying method. Otherwise, the path to the changed entry is copied,
+ * leaving the original map untouched, so it can still be read by other threads.
+ */
+final class ChildMap {
+
+	/**
+	 * The amount of hash bits used per level of the trie.
+	 */
+	private static final int BITS = 5;
+	private static final int MASK = (1 << BITS) - 1;
+
+	/**
+	 * The shift from which on all hash bits are used up,
+	 * nodes at this depth store their entries unordered.
+	 */
+	private static final int MAX_SHIFT = 32;
+
+	static final ChildMap EMPTY = new ChildMap(null, 0, new Object[0]);
+
+	/**
+	 * The edit token owning this map, see {@link ChildMap}.
+	 */
+	@Nullable
+	private final Object edit;
+
+	/**
+	 * The hash slots used by this node, unused once all hash bits are used up.
+	 */
+	private int bitmap;
+
+	/**
+	 * The key-value pairs of this node. A {@code null} key means the value
+	 * is a nested node containing entries with the same hash slot.
+	 */
+	private Object[] array;
+
+	private ChildMap(@Nullable Object edit, int bitmap, Object[] array) {
+		this.edit = edit;
+		this.bitmap = bitmap;
+		this.array = array;
+	}
+
+	boolean isEmpty() {
+		return array.length == 0;
+	}
+
+	/**
+	 * @param key the key.
+	 * @return the value for the given key, or {@code null} if it is absent.
+	 */
+	@Nullable
+	Object get(Object key) {
+		int hash = key.hashCode();
+		ChildMap node = this;
+		for (int shift = 0; ; shift += BITS) {
+			Object[] array = node.array;
+			if (shift >= MAX_SHIFT) {
+				for (int i = 0; i < array.length; i += 2) {
+					if (key.equals(array[i]))
+						return array[i + 1];
+				}
+				return null;
+			}
+
+			int bit = 1 << ((hash >>> shift) & MASK);
+			if ((node.bitmap & bit) == 0)
+				return null;
+
+			int index = index(node.bitmap, bit);
+			Object k = array[index];
+			if (k == null) {
+				node = (ChildMap) array[index + 1];
+			} else {
+				return key.equals(k) ? array[index + 1] : null;
+			}
+		}
+	}
+
+	/**
+	 * @param edit the edit token of the caller, {@code null} to never modify in place.
+	 * @param key the key.
+	 * @param value the new value.
+	 * @return the map containing the new mapping.
+	 */
+	ChildMap put(@Nullable Object edit, Object key, Object value) {
+		return put(edit, 0, key.hashCode(), key, value);
+	}
+
+	/**
+	 * @param edit the edit token of the caller, {@code null} to never modify in place.
+	 * @param key the key.
+	 * @return the map without a mapping for the given key.
+	 */
+	ChildMap remove(@Nullable Object edit, Object key) {
+		return remove(edit, 0, key.hashCode(), key);
+	}
+
+	/**
+	 * Copies all entries of this map into the given arrays, in no particular order.
+	 *
+	 * @param keys the array for the keys.
+	 * @param values the array for the values.
+	 * @param offset the index to start copying to.
+	 * @return the index after the last copied entry.
+	 */
+	int copyTo(Object[] keys, Object[] values, int offset) {
+		Object[] array = this.array;
+		for (int i = 0; i < array.length; i += 2) {
+			Object key = array[i];
+			if (key == null) {
+				offset = ((ChildMap) array[i + 1]).copyTo(keys, values, offset);
+			} else {
+				keys[offset] = key;
+				values[offset] = array[i + 1];
+				offset++;
+			}
+		}
+		return offset;
+	}
+
+	/**
+	 * @return the estimated amount of bytes used by the nodes of this map,
+	 * not including the keys and values.
+	 * @see VariablesMemoryReport
+	 */
+	long estimateSize() {
+		if (this == EMPTY)
+			return 0;
+		// two references and an int
+		long size = VariablesMemoryReport.objectSize(12) + VariablesMemoryReport.arraySize(array.length);
+		for (int i = 0; i < array.length; i += 2) {
+			if (array[i] == null)
+				size += ((ChildMap) array[i + 1]).estimateSize();
+		}
+		return size;
+	}
+
+	private ChildMap put(@Nullable Object edit, int shift, int hash, Object key, Object value) {
+		if (shift >= MAX_SHIFT) {
+			for (int i = 0; i < array.length; i += 2) {
+				if (key.equals(array[i]))
+					return array[i + 1] == value ? this : set(edit, i + 1, value);
+			}
+			return insert(edit, 0, array.length, key, value);
+		}
+
+		int bit = 1 << ((hash >>> shift) & MASK);
+		int index = index(bitmap, bit);
+		if ((bitmap & bit) == 0)
+			return insert(edit, bit, index, key, value);
+
+		Object k = array[index];
+		Object v = array[index + 1];
+		if (k == null) {
+			ChildMap child = (ChildMap) v;
+			ChildMap newChild = child.put(edit, shift + BITS, hash, key, value);
+			return newChild == child ? this : set(edit, index + 1, newChild);
+		}
+		if (key.equals(k))
+			return v == value ? this : set(edit, index + 1, value);
+
+		// Two keys share this slot, move them into a nested node
+		ChildMap child = EMPTY.put(edit, shift + BITS, k.hashCode(), k, v)
+			.put(edit, shift + BITS, hash, key, value);
+		ChildMap node = editable(edit);
+		node.array[index] = null;
+		node.array[index + 1] = child;
+		return node;
+	}
+
+	private ChildMap remove(@Nullable Object edit, int shift, int hash, Object key) {
+		if (shift >= MAX_SHIFT) {
+			for (int i = 0; i < array.length; i += 2) {
+				if (key.equals(array[i]))
+					return delete(edit, 0, i);
+			}
+			return this;
+		}
+
+		int bit = 1 << ((hash >>> shift) & MASK);
+		if ((bitmap & bit) == 0)
+			return this;
+
+		int index = index(bitmap, bit);
+		Object k = array[index];
+		if (k == null) {
+			ChildMap child = (ChildMap) array[index + 1];
+			ChildMap newChild = child.remove(edit, shift + BITS, hash, key);
+			if (newChild == child)
+				return this;
+			if (newChild.array.length == 0)
+				return delete(edit, bit, index);
+
+			ChildMap node = editable(edit);
+			if (newChild.array.length == 2 && newChild.array[0] != null) {
+				// A single entry is left in the nested node, move it up into this one
+				node.array[index] = newChild.array[0];
+				node.array[index + 1] = newChild.array[1];
+			} else {
+				node.array[index + 1] = newChild;
+			}
+			return node;
+		}
+		return key.equals(k) ? delete(edit, bit, index) : this;
+	}
+
+	private ChildMap insert(@Nullable Object edit, int bit, int index, Object key, Object value) {
+		Object[] newArray = new Object[array.length + 2];
+		System.arraycopy(array, 0, newArray, 0, index);
+		newArray[index] = key;
+		newArray[index + 1] = value;
+		System.arraycopy(array, index, newArray, index + 2, array.length - index);
+
+		if (isOwnedBy(edit)) {
+			bitmap |= bit;
+			array = newArray;
+			return this;
+		}
+		return new ChildMap(edit, bitmap | bit, newArray);
+	}
+
+	private ChildMap delete(@Nullable Object edit, int bit, int index) {
+		if (array.length == 2)
+			return EMPTY;
+
+		Object[] newArray = new Object[array.length - 2];
+		System.arraycopy(array, 0, newArray, 0, index);
+		System.arraycopy(array, index + 2, newArray, index, newArray.length - index);
+
+		if (isOwnedBy(edit)) {
+			bitmap &= ~bit;
+			array = newArray;
+			return this;
+		}
+		return new ChildMap(edit, bitmap & ~bit, newArray);
+	}
+
+	private ChildMap set(@Nullable Object edit, int index, Object value) {
+		ChildMap node = editable(edit);
+		node.array[index] = value;
+		return node;
+	}
+
+	private ChildMap editable(@Nullable Object edit) {
+		return isOwnedBy(edit) ? this : new ChildMap(edit, bitmap, array.clone());
+	}
+
+	private boolean isOwnedBy(@Nullable Object edit) {
+		return edit != null && this.edit == edit;
+	}
+
+	/**
+	 * @return the index of the key of the given hash slot in the array of a node.
+	 */
+	private static int index(int bitmap, int bit) {
+		return 2 * Integer.bitCount(bitmap & (bit - 1));
+	}
+
+}
@@ -42,8 +42,8 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Map;
 import java.util.Map.Entry;
-import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -80,8 +80,7 @@ public class FlatFileStorage extends VariablesStorage {
 	 * to the {@link #file}.
 	 * <p>
 	 * A Lock on this object must be acquired after connectionLock
-	 * if that lock is used
-	 * (and thus also after {@link Variables#getReadLock()}).
+	 * if that lock is used.
 	 */
 	private final NotifyingReference<PrintWriter> changesWriter = new NotifyingReference<>();
 
@@ -201,7 +200,12 @@ public class FlatFileStorage extends VariablesStorage {
 				}
 
 				if (split[1].equals("null")) {
-					Variables.variableLoaded(split[0], null, this);
+					if (split[0].endsWith(Variable.SEPARATOR + "*")) {
+						// Deletes the entries of the list that were saved before this line
+						Variables.listDeleted(split[0], this);
+					} else {
+						Variables.variableLoaded(split[0], null, this);
+					}
 				} else {
 					Object deserializedValue;
 					if (update2_1) {
@@ -296,6 +300,12 @@ public class FlatFileStorage extends VariablesStorage {
 		return true;
 	}
 
+	@Override
+	protected boolean supportsListDeletion() {
+		// The deletion is written like any other variable, and replayed when loading
+		return true;
+	}
+
 	@Override
 	protected File getFile(String fileName) {
 		return new File(fileName);
@@ -380,6 +390,10 @@ public class FlatFileStorage extends VariablesStorage {
 	/**
 	 * Completely rewrites the CSV file.
 	 * <p>
+	 * The variables are written from a snapshot, so they can still be changed while the file is written.
+	 * Changes that aren't in the snapshot are appended to the new file once it's written,
+	 * as they can't be saved while the {@link #connectionLock} is held.
+	 * <p>
 	 * The {@code finalSave} argument is used to determine if
 	 * the {@link #saveTask save} and {@link #backupTask backup} tasks
 	 * should be cancelled, and if the storage should reconnect after saving.
@@ -396,9 +410,6 @@ public class FlatFileStorage extends VariablesStorage {
 		}
 
 		try {
-			// Acquire read lock
-			Variables.getReadLock().lock();
-
 			synchronized (connectionLock) {
 				try {
 					if (file == null) {
@@ -451,9 +462,8 @@ public class FlatFileStorage extends VariablesStorage {
 				}
 			}
 		} finally {
-			Variables.getReadLock().unlock();
-			boolean gotWriteLock = Variables.variablesLock.writeLock().tryLock();
-			if (gotWriteLock) { // Only process queue now if it doesn't require us to wait
+			// Make the changes that were queued while the file was written, if it doesn't require us to wait
+			if (Variables.variablesLock.writeLock().tryLock()) {
 				try {
 					Variables.processChangeQueue();
 				} finally {
@@ -473,7 +483,7 @@ public class FlatFileStorage extends VariablesStorage {
 	 * @param map the variables map.
 	 */
 	@SuppressWarnings("unchecked")
-	private void save(PrintWriter pw, String parent, TreeMap<String, Object> map) {
+	private void save(PrintWriter pw, String parent, Map<String, Object> map) {
 		// Iterate over all children
 		for (Entry<String, Object> childEntry : map.entrySet()) {
 			Object childNode = childEntry.getValue();
@@ -482,9 +492,9 @@ public class FlatFileStorage extends VariablesStorage {
 			if (childNode == null)
 				continue; // Leaf node
 
-			if (childNode instanceof TreeMap) {
-				// TreeMap found, recurse
-				save(pw, parent + childKey + Variable.SEPARATOR, (TreeMap<String, Object>) childNode);
+			if (childNode instanceof Map) {
+				// List variable found, recurse
+				save(pw, parent + childKey + Variable.SEPARATOR, (Map<String, Object>) childNode);
 			} else {
 				// Remove variable separator if needed
 				String name = childKey == null ? parent.substring(0, parent.length() - Variable.SEPARATOR.length()) : parent + childKey;
@@ -0,0 +1,254 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The indices of the entries of a list variable by their value, see {@link VariableNode#findValue(Object, int)}.
+ * <p>
+ * Values are indexed by a key that is the same for all values that are equal as compared by
+ * {@link org.skriptlang.skript.lang.comparator.Comparators}: strings by their case-insensitive form,
+ * and numbers by their range of {@link #NUMBER_BUCKETS} per unit, which is wider than {@link ch.njol.skript.Skript#EPSILON},
+ * so equal numbers are found in the same or a neighbouring range.
+ * Lookups only return candidates, which still have to be compared.
+ * Values of other types can't be indexed, and a list with any such value can't use its index.
+ * Entries with list entries of their own are never equal to a value, so they aren't indexed.
+ * <p>
+ * The same ownership rules as for {@link ChildMap} apply.
+ */
+final class ListValueIndex {
+
+	private static final double NUMBER_BUCKETS = 0x1p20;
+
+	/**
+	 * Numbers at least this large are indexed by their exact value,
+	 * as they can't be equal to a different number of type double.
+	 */
+	private static final double MAX_BUCKETED = 0x1p43;
+
+	/**
+	 * The key of NaN, which is only equal to the same instance.
+	 */
+	private static final Object NAN = new Object();
+
+	@Nullable
+	private final Object edit;
+
+	/**
+	 * The indices by the key of their value: the index itself if it's the only one, otherwise {@link Indices}.
+	 */
+	private ChildMap indices;
+
+	/**
+	 * The amount of entries whose value can't be indexed.
+	 */
+	private int unindexed;
+
+	private ListValueIndex(@Nullable Object edit, ChildMap indices, int unindexed) {
+		this.edit = edit;
+		this.indices = indices;
+		this.unindexed = unindexed;
+	}
+
+	/**
+	 * Indexes the children of a node.
+	 *
+	 * @param node the node of the list variable.
+	 * @return the index, not owned by any edit token.
+	 */
+	static ListValueIndex build(VariableNode node) {
+		String[] keys = new String[node.childCount];
+		Object[] children = new Object[node.childCount];
+		node.children.copyTo(keys, children, 0);
+		Object edit = new Object();
+		ListValueIndex index = new ListValueIndex(edit, ChildMap.EMPTY, 0);
+		for (int i = 0; i < keys.length; i++)
+			index.add(edit, keys[i], children[i]);
+		// Built on a node that may be read by other threads, so it must not be modified in place later
+		return new ListValueIndex(null, index.indices, index.unindexed);
+	}
+
+	/**
+	 * Updates this index for a replaced child.
+	 *
+	 * @param edit the edit token of the caller, {@code null} to never modify in place.
+	 * @param key the key of the child.
+	 * @param oldChild the current child, {@code null} if there is none.
+	 * @param newChild the new child, {@code null} if the child is removed.
+	 * @return the updated index.
+	 */
+	ListValueIndex update(@Nullable Object edit, String key, @Nullable Object oldChild, @Nullable Object newChild) {
+		if (oldChild == newChild || isNode(oldChild) && isNode(newChild))
+			return this;
+		ListValueIndex index = edit != null && this.edit == edit ? this : new ListValueIndex(edit, indices, unindexed);
+		index.remove(edit, key, oldChild);
+		index.add(edit, key, newChild);
+		return index;
+	}
+
+	/**
+	 * @param value the value to find.
+	 * @return the indices whose value may equal the given value, in no particular order,
+	 * or {@code null} if they can't be found with this index.
+	 */
+	@Nullable
+	List<String> find(Object value) {
+		Object key = keyOf(value);
+		if (key == null || unindexed != 0)
+			return null;
+		if (!(key instanceof Long))
+			return candidates(key, new ArrayList<>());
+		long bucket = (Long) key;
+		List<String> candidates = new ArrayList<>();
+		for (long neighbour = bucket - 1; neighbour <= bucket + 1; neighbour++)
+			candidates(neighbour, candidates);
+		return candidates;
+	}
+
+	/**
+	 * @return the estimated amount of bytes used by this index, not including the indices and keys.
+	 * @see VariablesMemoryReport
+	 */
+	long estimateSize() {
+		// two references and an int
+		return VariablesMemoryReport.objectSize(12) + indices.estimateSize();
+	}
+
+	private List<String> candidates(Object key, List<String> candidates) {
+		Object entry = indices.get(key);
+		if (entry instanceof String) {
+			candidates.add((String) entry);
+		} else if (entry != null) {
+			Indices set = (Indices) entry;
+			Object[] keys = new Object[set.size];
+			set.map.copyTo(keys, new Object[set.size], 0);
+			for (Object index : keys)
+				candidates.add((String) index);
+		}
+		return candidates;
+	}
+
+	private void add(@Nullable Object edit, String index, @Nullable Object child) {
+		if (child == null || isNode(child))
+			return;
+		Object key = keyOf(child);
+		if (key == null) {
+			unindexed++;
+			return;
+		}
+		Object entry = indices.get(key);
+		Indices set;
+		if (entry == null) {
+			indices = indices.put(edit, key, index);
+			return;
+		} else if (entry instanceof String) {
+			set = new Indices(ChildMap.EMPTY.put(edit, entry, Boolean.TRUE).put(edit, index, Boolean.TRUE), 2);
+		} else {
+			set = (Indices) entry;
+			set = new Indices(set.map.put(edit, index, Boolean.TRUE), set.size + 1);
+		}
+		indices = indices.put(edit, key, set);
+	}
+
+	private void remove(@Nullable Object edit, String index, @Nullable Object child) {
+		if (child == null || isNode(child))
+			return;
+		Object key = keyOf(child);
+		if (key == null) {
+			unindexed--;
+			return;
+		}
+		Object entry = indices.get(key);
+		if (entry instanceof String) {
+			indices = indices.remove(edit, key);
+		} else if (entry != null) {
+			Indices set = (Indices) entry;
+			ChildMap map = set.map.remove(edit, index);
+			if (set.size == 2) {
+				// A single index is left, which is stored on its own
+				Object[] keys = new Object[1];
+				map.copyTo(keys, new Object[1], 0);
+				indices = indices.put(edit, key, keys[0]);
+			} else {
+				indices = indices.put(edit, key, new Indices(map, set.size - 1));
+			}
+		}
+	}
+
+	private static boolean isNode(@Nullable Object child) {
+		return child instanceof VariableNode || child instanceof VariablePager.PagedEntry;
+	}
+
+	/**
+	 * @return the key of the given value, or {@code null} if it can't be indexed.
+	 */
+	@Nullable
+	private static Object keyOf(Object value) {
+		if (value instanceof String)
+			return fold((String) value);
+		if (value instanceof Boolean)
+			return value;
+		if (value instanceof Number) {
+			double number = ((Number) value).doubleValue();
+			if (Double.isNaN(number))
+				return NAN;
+			if (Math.abs(number) < MAX_BUCKETED)
+				return (long) Math.floor(number * NUMBER_BUCKETS);
+			return number;
+		}
+		return null;
+	}
+
+	/**
+	 * @return the given string with each character folded the way {@link String#equalsIgnoreCase(String)} compares them.
+	 */
+	private static String fold(String string) {
+		char[] chars = null;
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+			char folded = Character.toLowerCase(Character.toUpperCase(c));
+			if (folded != c) {
+				if (chars == null)
+					chars = string.toCharArray();
+				chars[i] = folded;
+			}
+		}
+		return chars == null ? string : new String(chars);
+	}
+
+	/**
+	 * Multiple indices with values of the same key.
+	 */
+	private static final class Indices {
+
+		final ChildMap map;
+		final int size;
+
+		Indices(ChildMap map, int size) {
+			this.map = map;
+			this.size = size;
+		}
+
+	}
+
+}
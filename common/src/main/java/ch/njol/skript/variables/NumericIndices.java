@@ -0,0 +1,267 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The numeric indices in use by a list variable, e.g. {@code 1}, {@code 2} and {@code 5} for
+ * {@code {list::1}}, {@code {list::2}} and {@code {list::5}}, to find the lowest free index in constant time.
+ * <p>
+ * This is a bitmap trie: each node has {@link #SLOTS} slots for the nodes of the next level,
+ * and a node of the lowest level holds the bits of {@link #SLOTS} indices.
+ * Each node also marks which of its slots are completely in use, so a free index is found
+ * by going down the first slot that is not, which doesn't depend on the amount of indices in use.
+ * <p>
+ * The same ownership rules as for {@link ChildMap} apply.
+ */
+final class NumericIndices {
+
+	private static final int BITS = 5;
+	private static final int SLOTS = 1 << BITS;
+
+	/**
+	 * The level of the root node, so the trie covers all positive integers.
+	 */
+	private static final int ROOT_LEVEL = 6;
+
+	private static final NumericIndices[] NO_CHILDREN = new NumericIndices[0];
+
+	static final NumericIndices EMPTY = new NumericIndices(null, 0, 0, NO_CHILDREN);
+
+	/**
+	 * The edit token owning this node, see {@link ChildMap}.
+	 */
+	@Nullable
+	private final Object edit;
+
+	/**
+	 * The slots that are used, or the indices that are used in a node of the lowest level.
+	 */
+	private int bitmap;
+
+	/**
+	 * The slots whose nodes are completely used, unused in a node of the lowest level.
+	 */
+	private int full;
+
+	/**
+	 * The nodes of the used slots, in the order of their slots.
+	 */
+	private NumericIndices[] children;
+
+	private NumericIndices(@Nullable Object edit, int bitmap, int full, NumericIndices[] children) {
+		this.edit = edit;
+		this.bitmap = bitmap;
+		this.full = full;
+		this.children = children;
+	}
+
+	/**
+	 * @param key the key of a child of a list variable.
+	 * @return the numeric index the key is the name of, i.e. {@code "" + index} equals the key,
+	 * or {@code -1} if it isn't one.
+	 */
+	static int parse(String key) {
+		int length = key.length();
+		if (length == 0 || length > 10 || key.charAt(0) < '1' || key.charAt(0) > '9')
+			return -1;
+		long index = 0;
+		for (int i = 0; i < length; i++) {
+			char c = key.charAt(i);
+			if (c < '0' || c > '9')
+				return -1;
+			index = index * 10 + c - '0';
+		}
+		return index > Integer.MAX_VALUE ? -1 : (int) index;
+	}
+
+	/**
+	 * @param edit the edit token of the caller, {@code null} to never modify in place.
+	 * @param index the index, at least {@code 1}.
+	 * @return the indices including the given index.
+	 */
+	NumericIndices add(@Nullable Object edit, int index) {
+		return add(edit, ROOT_LEVEL, index);
+	}
+
+	/**
+	 * @param edit the edit token of the caller, {@code null} to never modify in place.
+	 * @param index the index, at least {@code 1}.
+	 * @return the indices without the given index.
+	 */
+	NumericIndices remove(@Nullable Object edit, int index) {
+		return remove(edit, ROOT_LEVEL, index);
+	}
+
+	/**
+	 * @param after the index to start after, {@code 0} to find the lowest free index.
+	 * @return the lowest index after the given one that is not in use.
+	 */
+	int nextFree(int after) {
+		long free = nextFree(ROOT_LEVEL, after + 1L);
+		assert free > after && free <= Integer.MAX_VALUE : free;
+		return (int) free;
+	}
+
+	/**
+	 * @return the estimated amount of bytes used by this trie.
+	 * @see VariablesMemoryReport
+	 */
+	long estimateSize() {
+		if (this == EMPTY)
+			return 0;
+		// two references and two ints
+		long size = VariablesMemoryReport.objectSize(16) + VariablesMemoryReport.arraySize(children.length);
+		for (NumericIndices child : children)
+			size += child.estimateSize();
+		return size;
+	}
+
+	/**
+	 * @param level the level of this node.
+	 * @param from the position in the range of this node to start at.
+	 * @return the position of the lowest free index in this node from the given position,
+	 * or {@code -1} if there is none.
+	 */
+	private long nextFree(int level, long from) {
+		if (level == 0) {
+			int free = ~bitmap & (-1 << from);
+			return free == 0 ? -1 : Integer.numberOfTrailingZeros(free);
+		}
+
+		int shift = BITS * level;
+		int first = (int) (from >>> shift);
+		long rest = from & ((1L << shift) - 1);
+		// At most the first slot fails, as any later slot that isn't full has a free index
+		for (int slots = ~full & (-1 << first); slots != 0; slots &= slots - 1) {
+			int slot = Integer.numberOfTrailingZeros(slots);
+			long start = slot == first ? rest : 0;
+			int bit = 1 << slot;
+			if ((bitmap & bit) == 0)
+				return ((long) slot << shift) + start;
+			long free = children[index(bitmap, bit)].nextFree(level - 1, start);
+			if (free != -1)
+				return ((long) slot << shift) + free;
+		}
+		return -1;
+	}
+
+	private NumericIndices add(@Nullable Object edit, int level, long position) {
+		if (level == 0) {
+			int bit = 1 << position;
+			if ((bitmap & bit) != 0)
+				return this;
+			NumericIndices node = editable(edit);
+			node.bitmap |= bit;
+			return node;
+		}
+
+		int shift = BITS * level;
+		int bit = 1 << (int) (position >>> shift);
+		int index = index(bitmap, bit);
+		boolean used = (bitmap & bit) != 0;
+		NumericIndices child = used ? children[index] : EMPTY;
+		NumericIndices newChild = child.add(edit, level - 1, position & ((1L << shift) - 1));
+		boolean full = newChild.isFull(level - 1);
+		// The child may have been changed in place, which can still make it full
+		if (newChild == child && full == ((this.full & bit) != 0))
+			return this;
+
+		NumericIndices node = editable(edit);
+		if (used) {
+			node.children[index] = newChild;
+		} else {
+			node.children = insert(node.children, index, newChild);
+			node.bitmap |= bit;
+		}
+		if (full)
+			node.full |= bit;
+		return node;
+	}
+
+	private NumericIndices remove(@Nullable Object edit, int level, long position) {
+		if (level == 0) {
+			int bit = 1 << position;
+			if ((bitmap & bit) == 0)
+				return this;
+			if (bitmap == bit)
+				return EMPTY;
+			NumericIndices node = editable(edit);
+			node.bitmap &= ~bit;
+			return node;
+		}
+
+		int shift = BITS * level;
+		int bit = 1 << (int) (position >>> shift);
+		if ((bitmap & bit) == 0)
+			return this;
+		int index = index(bitmap, bit);
+		NumericIndices child = children[index];
+		NumericIndices newChild = child.remove(edit, level - 1, position & ((1L << shift) - 1));
+		// The child may have been changed in place, which makes it no longer full
+		if (newChild == child && (full & bit) == 0)
+			return this;
+		if (newChild == EMPTY && bitmap == bit)
+			return EMPTY;
+
+		NumericIndices node = editable(edit);
+		if (newChild == EMPTY) {
+			node.children = delete(node.children, index);
+			node.bitmap &= ~bit;
+		} else {
+			node.children[index] = newChild;
+		}
+		node.full &= ~bit;
+		return node;
+	}
+
+	private boolean isFull(int level) {
+		return level == 0 ? bitmap == -1 : full == -1;
+	}
+
+	private NumericIndices editable(@Nullable Object edit) {
+		if (edit != null && this.edit == edit)
+			return this;
+		return new NumericIndices(edit, bitmap, full, children.length == 0 ? children : children.clone());
+	}
+
+	private static NumericIndices[] insert(NumericIndices[] children, int index, NumericIndices child) {
+		NumericIndices[] newChildren = new NumericIndices[children.length + 1];
+		System.arraycopy(children, 0, newChildren, 0, index);
+		newChildren[index] = child;
+		System.arraycopy(children, index, newChildren, index + 1, children.length - index);
+		return newChildren;
+	}
+
+	private static NumericIndices[] delete(NumericIndices[] children, int index) {
+		NumericIndices[] newChildren = new NumericIndices[children.length - 1];
+		System.arraycopy(children, 0, newChildren, 0, index);
+		System.arraycopy(children, index + 1, newChildren, index, newChildren.length - index);
+		return newChildren;
+	}
+
+	/**
+	 * @return the index of the node of the given slot in {@link #children}.
+	 */
+	private static int index(int bitmap, int bit) {
+		return Integer.bitCount(bitmap & (bit - 1));
+	}
+
+}
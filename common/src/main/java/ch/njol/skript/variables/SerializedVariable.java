@@ -18,8 +18,11 @@
  */
 package ch.njol.skript.variables;
 
+import ch.njol.skript.lang.Variable;
 import org.eclipse.jdt.annotation.Nullable;
 
+import java.util.Map;
+
 /**
  * An instance of a serialized variable, contains the variable name
  * and the serialized value.
@@ -35,10 +38,20 @@ public class SerializedVariable {
 	 * The serialized value of the variable.
 	 * <p>
 	 * A value of {@code null} indicates the variable will be deleted.
+	 * If the variable is a list variable, i.e. its name ends with {@code ::*},
+	 * all of its entries are deleted, see {@link #isListDeletion()}.
 	 */
 	@Nullable
 	public final Value value;
 
+	/**
+	 * The deleted list variable if this is a {@link #isListDeletion() list deletion},
+	 * so its entries can be deleted one by one from storages that don't
+	 * {@link VariablesStorage#supportsListDeletion() support list deletions}.
+	 */
+	@Nullable
+	final Map<String, Object> deletedList;
+
 	/**
 	 * Creates a new serialized variable with the given name and value.
 	 *
@@ -46,8 +59,33 @@ public class SerializedVariable {
 	 * @param value the given value, or {@code null} to indicate a deletion.
 	 */
 	public SerializedVariable(String name, @Nullable Value value) {
+		this(name, value, null);
+	}
+
+	private SerializedVariable(String name, @Nullable Value value, @Nullable Map<String, Object> deletedList) {
 		this.name = name;
 		this.value = value;
+		this.deletedList = deletedList;
+	}
+
+	/**
+	 * Creates the deletion of a list variable.
+	 *
+	 * @param name the name of the list variable, ending with {@code ::*}.
+	 * @param deletedList the list variable before it was deleted, or {@code null} if it wasn't set.
+	 * @return the list deletion.
+	 */
+	static SerializedVariable listDeletion(String name, @Nullable Map<String, Object> deletedList) {
+		assert name.endsWith(Variable.SEPARATOR + "*") : name;
+		return new SerializedVariable(name, null, deletedList);
+	}
+
+	/**
+	 * @return whether this is the deletion of all entries of a list variable,
+	 * which replaces the deletions of the single entries.
+	 */
+	public boolean isListDeletion() {
+		return value == null && name.endsWith(Variable.SEPARATOR + "*");
 	}
 
 	/**
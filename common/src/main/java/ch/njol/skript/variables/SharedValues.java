@@ -0,0 +1,93 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+/**
+ * Shares the instances of common numbers between variables, so the many variables holding
+ * small whole numbers, like counters and flags, don't each keep their own boxed copy.
+ * <p>
+ * Variable values are never modified, so an equal value can always be replaced by a shared one.
+ */
+final class SharedValues {
+
+	private static final int MIN = -128;
+	private static final int MAX = 1023;
+
+	/**
+	 * The shared instances, created when first needed.
+	 * Racing threads may each store an instance, which is harmless as they are equal.
+	 */
+	private static final Long[] LONGS = new Long[MAX - MIN + 1];
+	private static final Double[] DOUBLES = new Double[MAX - MIN + 1];
+
+	private SharedValues() {}
+
+	/**
+	 * @param value a variable value.
+	 * @return a shared instance equal to the given value, or the value itself if it isn't shared.
+	 */
+	static Object share(Object value) {
+		if (value instanceof Long) {
+			long number = (Long) value;
+			if (number < MIN || number > MAX)
+				return value;
+			int index = (int) number - MIN;
+			Long shared = LONGS[index];
+			if (shared == null)
+				LONGS[index] = shared = (Long) value;
+			return shared;
+		} else if (value instanceof Double) {
+			int index = indexOf((Double) value);
+			if (index == -1)
+				return value;
+			Double shared = DOUBLES[index];
+			if (shared == null)
+				DOUBLES[index] = shared = (Double) value;
+			return shared;
+		}
+		return value;
+	}
+
+	/**
+	 * @param value a variable value.
+	 * @return whether the given value is a shared instance.
+	 */
+	static boolean isShared(Object value) {
+		if (value instanceof Long) {
+			long number = (Long) value;
+			return number >= MIN && number <= MAX && LONGS[(int) number - MIN] == value;
+		} else if (value instanceof Double) {
+			int index = indexOf((Double) value);
+			return index != -1 && DOUBLES[index] == value;
+		}
+		return false;
+	}
+
+	/**
+	 * @return the index of the given number in {@link #DOUBLES}, or {@code -1} if it isn't shared.
+	 */
+	private static int indexOf(double number) {
+		int whole = (int) number;
+		// compare the bits, as -0.0 equals 0.0 as a double, but not as a Double
+		if (whole < MIN || whole > MAX || Double.doubleToRawLongBits(number) != Double.doubleToRawLongBits(whole))
+			return -1;
+		return whole - MIN;
+	}
+
+}
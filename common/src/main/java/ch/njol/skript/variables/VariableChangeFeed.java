@@ -0,0 +1,297 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import ch.njol.skript.Skript;
+import ch.njol.skript.lang.Variable;
+import ch.njol.skript.util.Task;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Passes the changes of global variables on to subscribers, e.g. addons mirroring variables elsewhere,
+ * see {@link Variables#subscribe(String, int, OverflowPolicy, Listener)}.
+ * <p>
+ * Changes are published where they are saved, so subscribers see the same changes in the same order
+ * as the storages. They are buffered for each subscription, and delivered once per tick on the main thread.
+ */
+public final class VariableChangeFeed {
+
+	private static final Subscription[] NO_SUBSCRIPTIONS = new Subscription[0];
+
+	/**
+	 * The current subscriptions, replaced as a whole when they change,
+	 * so publishing doesn't need to lock anything.
+	 */
+	private volatile Subscription[] subscriptions = NO_SUBSCRIPTIONS;
+
+	/**
+	 * The task delivering the buffered changes, started with the first subscription.
+	 */
+	@Nullable
+	private Task deliveryTask;
+
+	VariableChangeFeed() {}
+
+	/**
+	 * Publishes a change to the subscriptions whose prefix it affects.
+	 *
+	 * @param name the name of the changed variable.
+	 * @param value the new value, {@code null} if the variable was deleted.
+	 */
+	void publish(String name, @Nullable Object value) {
+		Subscription[] subscriptions = this.subscriptions;
+		if (subscriptions.length == 0)
+			return;
+		Change change = new Change(name, value);
+		for (Subscription subscription : subscriptions) {
+			if (subscription.affectedBy(change))
+				subscription.add(change);
+		}
+	}
+
+	synchronized Subscription subscribe(String prefix, int capacity, OverflowPolicy policy, Listener listener) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("The capacity must be at least 1: " + capacity);
+		Subscription subscription = new Subscription(prefix, capacity, policy, listener);
+		Subscription[] subscriptions = Arrays.copyOf(this.subscriptions, this.subscriptions.length + 1);
+		subscriptions[subscriptions.length - 1] = subscription;
+		this.subscriptions = subscriptions;
+
+		if (deliveryTask == null) {
+			deliveryTask = new Task(Skript.getInstance(), 1, 1) {
+				@Override
+				public void run() {
+					deliver();
+				}
+			};
+		}
+		return subscription;
+	}
+
+	private synchronized void unsubscribe(Subscription subscription) {
+		List<Subscription> subscriptions = new ArrayList<>(Arrays.asList(this.subscriptions));
+		if (subscriptions.remove(subscription))
+			this.subscriptions = subscriptions.toArray(NO_SUBSCRIPTIONS);
+	}
+
+	/**
+	 * Delivers the buffered changes of each subscription to its listener.
+	 */
+	private void deliver() {
+		for (Subscription subscription : subscriptions) {
+			try {
+				subscription.deliver();
+			} catch (Exception e) {
+				//noinspection ThrowableNotThrown
+				Skript.exception(e, "Error delivering variable changes with prefix '" + subscription.prefix + "'");
+			}
+		}
+	}
+
+	/**
+	 * What a subscription does with changes that don't fit into its buffer.
+	 */
+	public enum OverflowPolicy {
+
+		/**
+		 * Discards the oldest buffered change to make room for the new one.
+		 */
+		DROP_OLDEST,
+
+		/**
+		 * Discards the new change.
+		 */
+		DROP_NEWEST,
+
+		/**
+		 * Buffers only the latest change of each variable, which replaces the previous change of the variable,
+		 * so the capacity limits the amount of different variables.
+		 * A change of a variable that doesn't fit is discarded.
+		 */
+		COALESCE
+
+	}
+
+	/**
+	 * Receives the changes of a subscription.
+	 */
+	@FunctionalInterface
+	public interface Listener {
+
+		/**
+		 * Called on the main thread once per tick in which there were changes.
+		 *
+		 * @param changes the changes since the last call, in the order they were made.
+		 * @param dropped the amount of changes that were discarded since the last call due to the
+		 *                   {@link OverflowPolicy}, after which the changes alone may not give the current values.
+		 */
+		void onChanges(List<Change> changes, int dropped);
+
+	}
+
+	/**
+	 * A change of a global variable.
+	 */
+	public static final class Change {
+
+		private final String name;
+
+		@Nullable
+		private final Object value;
+
+		private Change(String name, @Nullable Object value) {
+			this.name = name;
+			this.value = value;
+		}
+
+		/**
+		 * @return the name of the changed variable, ending with {@code ::*} if all entries of a list were deleted.
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * <b>Do not modify the returned value!</b>
+		 *
+		 * @return the new value, or {@code null} if the variable was deleted.
+		 */
+		@Nullable
+		public Object getValue() {
+			return value;
+		}
+
+		/**
+		 * @return whether all entries of a list variable were deleted, see {@link Variables#deleteSubtree(String[])}.
+		 */
+		public boolean isListDeletion() {
+			return value == null && name.endsWith(Variable.SEPARATOR + "*");
+		}
+
+		@Override
+		public String toString() {
+			return name + " = " + value;
+		}
+
+	}
+
+	/**
+	 * A subscription to the changes of the variables whose names start with a prefix.
+	 */
+	public final class Subscription {
+
+		private final String prefix;
+		private final int capacity;
+		private final OverflowPolicy policy;
+		private final Listener listener;
+
+		/**
+		 * The buffered changes, unless the policy is {@link OverflowPolicy#COALESCE}.
+		 */
+		@Nullable
+		private final ArrayDeque<Change> queue;
+
+		/**
+		 * The latest buffered change of each variable, by its name, if the policy is {@link OverflowPolicy#COALESCE}.
+		 */
+		@Nullable
+		private final LinkedHashMap<String, Change> latest;
+
+		private int dropped;
+
+		private Subscription(String prefix, int capacity, OverflowPolicy policy, Listener listener) {
+			this.prefix = prefix;
+			this.capacity = capacity;
+			this.policy = policy;
+			this.listener = listener;
+			this.queue = policy == OverflowPolicy.COALESCE ? null : new ArrayDeque<>();
+			this.latest = policy == OverflowPolicy.COALESCE ? new LinkedHashMap<>() : null;
+		}
+
+		/**
+		 * @return the prefix of the names of the variables this subscription receives the changes of.
+		 */
+		public String getPrefix() {
+			return prefix;
+		}
+
+		/**
+		 * Stops receiving changes. Changes that are still buffered are discarded.
+		 */
+		public void cancel() {
+			unsubscribe(this);
+		}
+
+		/**
+		 * @return whether the change is of a variable with this prefix, or deletes the list containing all of them.
+		 */
+		private boolean affectedBy(Change change) {
+			if (change.name.startsWith(prefix))
+				return true;
+			return change.isListDeletion() && prefix.startsWith(change.name.substring(0, change.name.length() - 1));
+		}
+
+		private synchronized void add(Change change) {
+			if (latest != null) {
+				// Removed first, so the change keeps its place in the order of the latest changes
+				if (latest.remove(change.name) == null && latest.size() >= capacity) {
+					dropped++;
+					return;
+				}
+				latest.put(change.name, change);
+				return;
+			}
+			if (queue.size() >= capacity) {
+				dropped++;
+				if (policy == OverflowPolicy.DROP_NEWEST)
+					return;
+				queue.poll();
+			}
+			queue.add(change);
+		}
+
+		private void deliver() {
+			List<Change> changes;
+			int dropped;
+			synchronized (this) {
+				if (this.dropped == 0 && (latest != null ? latest.isEmpty() : queue.isEmpty()))
+					return;
+				if (latest != null) {
+					changes = new ArrayList<>(latest.values());
+					latest.clear();
+				} else {
+					changes = new ArrayList<>(queue);
+					queue.clear();
+				}
+				dropped = this.dropped;
+				this.dropped = 0;
+			}
+			listener.onChanges(Collections.unmodifiableList(changes), dropped);
+		}
+
+	}
+
+}
@@ -0,0 +1,228 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import ch.njol.skript.util.Timespan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of when global variables set with a lifetime expire,
+ * see {@link Variables#setVariable(String[], Object, Timespan)}.
+ * <p>
+ * Expirations are kept in a hierarchical timing wheel: each level has {@link #SLOTS} slots,
+ * where a slot of the first level covers one tick, and a slot of every next level
+ * covers a whole turn of the level below it. An expiration is put into the lowest level
+ * that reaches its tick, and moved down a level whenever the level below comes round to its slot,
+ * so adding an expiration and finding the due ones both take constant time.
+ * <p>
+ * Setting a variable again cancels its expiration, which only forgets it here,
+ * and leaves it in the wheel until it's due to keep cancelling cheap.
+ */
+final class VariableExpiry {
+
+	/**
+	 * The length of a tick of the wheel, i.e. the precision of lifetimes, in milliseconds.
+	 */
+	static final long TICK_MILLIS = 50;
+
+	private static final int SLOT_BITS = 6;
+	private static final int SLOTS = 1 << SLOT_BITS;
+	private static final int SLOT_MASK = SLOTS - 1;
+	private static final int LEVELS = 4;
+
+	/**
+	 * The slots of each level, created when first needed.
+	 */
+	private final Slot[][] wheel = new Slot[LEVELS][SLOTS];
+
+	/**
+	 * Expirations that are too far away for the highest level, put back into the wheel
+	 * whenever the highest level moves to its next slot.
+	 */
+	private final List<Expiration> overflow = new ArrayList<>();
+
+	/**
+	 * Expirations that are due, but not handled yet.
+	 */
+	private List<Expiration> due = new ArrayList<>();
+
+	/**
+	 * The amount of expirations in the wheel and in {@link #overflow}.
+	 */
+	private int size;
+
+	/**
+	 * The last tick that was handled.
+	 */
+	private long tick;
+
+	/**
+	 * The current expiration of each variable, by the name of the variable.
+	 */
+	private final Map<String, Expiration> expirations = new ConcurrentHashMap<>();
+
+	VariableExpiry() {
+		tick = currentTick();
+	}
+
+	/**
+	 * Makes a variable expire after the given time, replacing its previous expiration.
+	 *
+	 * @param name the name of the variable.
+	 * @param path the parts of the name of the variable.
+	 * @param lifetime the time until the variable expires, in milliseconds.
+	 */
+	void schedule(String name, String[] path, long lifetime) {
+		Expiration expiration = new Expiration(name, path, currentTick() + Math.max(1, (lifetime + TICK_MILLIS - 1) / TICK_MILLIS));
+		expirations.put(name, expiration);
+		synchronized (this) {
+			add(expiration);
+		}
+	}
+
+	/**
+	 * Cancels the expiration of a variable, if it has one.
+	 *
+	 * @param name the name of the variable.
+	 */
+	void cancel(String name) {
+		if (!expirations.isEmpty())
+			expirations.remove(name);
+	}
+
+	/**
+	 * Moves the wheel to the current tick.
+	 *
+	 * @return whether any expirations are due, see {@link #takeDue()}.
+	 */
+	synchronized boolean advance() {
+		long now = currentTick();
+		if (size == 0) {
+			// Nothing to move, e.g. before the first variable with a lifetime was set
+			tick = now;
+			return !due.isEmpty();
+		}
+		while (tick < now) {
+			tick++;
+			// Move the expirations of the next slot of each level that came round down a level
+			for (int level = 1; level < LEVELS; level++) {
+				if ((tick & ((1L << (SLOT_BITS * level)) - 1)) != 0)
+					break;
+				Slot slot = wheel[level][(int) (tick >>> (SLOT_BITS * level)) & SLOT_MASK];
+				if (slot != null && !slot.expirations.isEmpty())
+					moveDown(slot.expirations);
+				if (level == LEVELS - 1 && !overflow.isEmpty())
+					moveDown(overflow);
+			}
+			Slot slot = wheel[0][(int) tick & SLOT_MASK];
+			if (slot != null && !slot.expirations.isEmpty()) {
+				due.addAll(slot.expirations);
+				size -= slot.expirations.size();
+				slot.expirations.clear();
+			}
+		}
+		return !due.isEmpty();
+	}
+
+	/**
+	 * Takes the expirations that are due and haven't been cancelled.
+	 * <p>
+	 * The variables must be locked for writing, so that the variables can't be set
+	 * between checking and deleting them.
+	 *
+	 * @return the expired variables.
+	 */
+	List<Expiration> takeDue() {
+		List<Expiration> due;
+		synchronized (this) {
+			due = this.due;
+			this.due = new ArrayList<>();
+		}
+		due.removeIf(expiration -> !expirations.remove(expiration.name, expiration));
+		return due;
+	}
+
+	/**
+	 * Puts the expirations of a slot back into the wheel, where they end up in a lower level.
+	 */
+	private void moveDown(List<Expiration> slot) {
+		List<Expiration> expirations = new ArrayList<>(slot);
+		size -= slot.size();
+		slot.clear();
+		expirations.forEach(this::add);
+	}
+
+	/**
+	 * Puts an expiration into the slot of the lowest level that reaches its tick.
+	 */
+	private void add(Expiration expiration) {
+		long delay = expiration.tick - tick;
+		if (delay <= 0) {
+			due.add(expiration);
+			return;
+		}
+		size++;
+		for (int level = 0; level < LEVELS; level++) {
+			if (delay < 1L << (SLOT_BITS * (level + 1))) {
+				int index = (int) (expiration.tick >>> (SLOT_BITS * level)) & SLOT_MASK;
+				Slot slot = wheel[level][index];
+				if (slot == null)
+					wheel[level][index] = slot = new Slot();
+				slot.expirations.add(expiration);
+				return;
+			}
+		}
+		overflow.add(expiration);
+	}
+
+	private static long currentTick() {
+		return System.nanoTime() / (TICK_MILLIS * 1_000_000);
+	}
+
+	/**
+	 * The expirations of a slot of the wheel, a class of its own so the wheel can be an array of it.
+	 */
+	private static final class Slot {
+
+		private final List<Expiration> expirations = new ArrayList<>();
+
+	}
+
+	/**
+	 * A variable that expires at a given tick.
+	 */
+	static final class Expiration {
+
+		final String name;
+		final String[] path;
+		private final long tick;
+
+		private Expiration(String name, String[] path, long tick) {
+			this.name = name;
+			this.path = path;
+			this.tick = tick;
+		}
+
+	}
+
+}
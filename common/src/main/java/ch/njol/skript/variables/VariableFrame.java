@@ -0,0 +1,199 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * The local variables of one execution of a trigger or function.
+ * <p>
+ * Variables with a slot in the {@link VariableSlots} of the frame are stored in an array,
+ * all others, e.g. list variables or variables with a dynamic name, in a {@link VariablesMap}.
+ * A frame takes the slots of the first {@link ch.njol.skript.lang.Variable} accessing it by slot,
+ * accesses using slots of another structure fall back to the name of the variable.
+ */
+final class VariableFrame {
+
+	private static final Object[] NO_VALUES = new Object[0];
+
+	@Nullable
+	private VariableSlots slots;
+
+	/**
+	 * The values of the variables with a slot, indexed by slot.
+	 */
+	private Object[] values;
+
+	/**
+	 * The variables without a slot, created when first needed.
+	 */
+	@Nullable
+	private VariablesMap map;
+
+	VariableFrame(@Nullable VariableSlots slots) {
+		this.slots = slots;
+		this.values = slots == null ? NO_VALUES : new Object[slots.size()];
+	}
+
+	/**
+	 * Creates a frame without slots holding the variables of the given map, see {@link #toMap()}.
+	 *
+	 * @param map the variables, which are modified by this frame.
+	 */
+	static VariableFrame of(VariablesMap map) {
+		VariableFrame frame = new VariableFrame(null);
+		frame.map = map;
+		return frame;
+	}
+
+	/**
+	 * @param slots the slots of the accessing variable.
+	 * @param slot the slot of the variable.
+	 * @return the value of the variable.
+	 */
+	@Nullable
+	Object get(VariableSlots slots, int slot) {
+		if (this.slots != slots)
+			return getVariable(slots.getName(slot));
+		return slot < values.length ? values[slot] : null;
+	}
+
+	/**
+	 * @param slots the slots of the accessing variable.
+	 * @param slot the slot of the variable.
+	 * @param value the new value, {@code null} to delete the variable.
+	 */
+	void set(VariableSlots slots, int slot, @Nullable Object value) {
+		if (this.slots == null)
+			adopt(slots);
+		if (this.slots != slots) {
+			setVariable(slots.getName(slot), value);
+			return;
+		}
+		if (slot >= values.length) {
+			if (value == null)
+				return;
+			values = Arrays.copyOf(values, slots.size());
+		}
+		values[slot] = value;
+	}
+
+	/**
+	 * @see VariablesMap#getVariable(String)
+	 */
+	@Nullable
+	Object getVariable(String name) {
+		return getVariable(Variables.splitVariableName(name));
+	}
+
+	/**
+	 * @see VariablesMap#getVariable(String[])
+	 */
+	@Nullable
+	Object getVariable(String[] path) {
+		int slot = slotOf(path);
+		if (slot != -1)
+			return slot < values.length ? values[slot] : null;
+		return map == null ? null : map.getVariable(path);
+	}
+
+	/**
+	 * @see VariablesMap#setVariable(String, Object)
+	 */
+	void setVariable(String name, @Nullable Object value) {
+		setVariable(Variables.splitVariableName(name), value);
+	}
+
+	/**
+	 * @see VariablesMap#setVariable(String[], Object)
+	 */
+	void setVariable(String[] path, @Nullable Object value) {
+		VariableSlots slots = this.slots;
+		int slot = slotOf(path);
+		if (slot != -1) {
+			assert slots != null;
+			set(slots, slot, value);
+		} else if (map != null) {
+			map.setVariable(path, value);
+		} else if (value != null) {
+			map = new VariablesMap();
+			map.setVariable(path, value);
+		}
+	}
+
+	/**
+	 * @return the slot of the variable with the given name, or {@code -1} if it has none.
+	 */
+	private int slotOf(String[] path) {
+		return slots == null || path.length != 1 ? -1 : slots.indexOf(path[0]);
+	}
+
+	/**
+	 * @return a map with all variables of this frame, including those with a slot,
+	 * which doesn't change when this frame does.
+	 */
+	VariablesMap toMap() {
+		VariablesMap map = this.map != null ? this.map.copy() : new VariablesMap();
+		VariableSlots slots = this.slots;
+		for (int slot = 0; slot < values.length; slot++) {
+			if (values[slot] != null) {
+				assert slots != null;
+				map.setVariable(slots.getName(slot), values[slot]);
+			}
+		}
+		return map;
+	}
+
+	/**
+	 * @return a copy of this frame.
+	 */
+	VariableFrame copy() {
+		VariableFrame copy = new VariableFrame(null);
+		copy.slots = slots;
+		copy.values = values.clone();
+		if (map != null)
+			copy.map = map.copy();
+		return copy;
+	}
+
+	/**
+	 * Makes this frame, which has no slots yet, use the given slots,
+	 * moving the variables that have a slot out of the map.
+	 */
+	private void adopt(VariableSlots slots) {
+		assert this.slots == null;
+		this.slots = slots;
+		this.values = new Object[slots.size()];
+
+		VariablesMap map = this.map;
+		if (map == null)
+			return;
+		for (int slot = 0; slot < values.length; slot++) {
+			String name = slots.getName(slot);
+			Object value = map.getVariable(name);
+			if (value != null) {
+				values[slot] = value;
+				map.setVariable(name, null);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,370 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import org.eclipse.jdt.annotation.Nullable;
+import org.skriptlang.skript.lang.comparator.Comparators;
+import org.skriptlang.skript.lang.comparator.Relation;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A node of the variable tree, e.g. the node of {@code {list}} holds the value of {@code {list}}
+ * itself, and the entries of {@code {list::*}} as its children, keyed by their last name segment.
+ * A child is either a value, or another node if the child has list entries of its own,
+ * or a {@link VariablePager.PagedEntry} in place of such a node if it was moved to a file.
+ * <p>
+ * A node is also the read-only view of its list variable, where the {@code null} key
+ * maps to the node's own value and the other keys are iterated in variable name order.
+ * The same ownership rules as for {@link ChildMap} apply: nodes are only modified
+ * in place by the holder of their edit token.
+ */
+final class VariableNode extends AbstractMap<String, Object> {
+
+	@Nullable
+	private final Object edit;
+
+	/**
+	 * The value of the variable of this node itself.
+	 */
+	@Nullable
+	Object value;
+
+	/**
+	 * The children of this node, never empty unless this is a root node.
+	 */
+	ChildMap children;
+
+	/**
+	 * The amount of children of this node.
+	 */
+	int childCount;
+
+	/**
+	 * The amount of values in the subtree of this node, including its own value.
+	 */
+	int valueCount;
+
+	/**
+	 * The keys of the children in variable name order, built when first needed.
+	 */
+	@Nullable
+	private volatile String[] sortedKeys;
+
+	/**
+	 * The keys of the children that have a value of their own, in variable name order,
+	 * built when first needed.
+	 */
+	@Nullable
+	private volatile String[] valueKeys;
+
+	/**
+	 * The keys of the children by their value, built when first needed by {@link #findValue(Object, int)}
+	 * and kept up to date afterwards.
+	 */
+	@Nullable
+	private volatile ListValueIndex valueIndex;
+
+	/**
+	 * The numeric keys of the children, built when first needed by {@link #nextFreeIndex(int)}
+	 * and kept up to date afterwards.
+	 */
+	@Nullable
+	private volatile NumericIndices numericKeys;
+
+	VariableNode(@Nullable Object edit) {
+		this(edit, null, ChildMap.EMPTY, 0, 0);
+	}
+
+	private VariableNode(@Nullable Object edit, @Nullable Object value, ChildMap children, int childCount, int valueCount) {
+		this.edit = edit;
+		this.value = value;
+		this.children = children;
+		this.childCount = childCount;
+		this.valueCount = valueCount;
+	}
+
+	/**
+	 * @param edit the edit token of the caller, {@code null} to never modify in place.
+	 * @return this node if it is owned by the given token, otherwise a copy owned by it.
+	 */
+	VariableNode editable(@Nullable Object edit) {
+		if (edit != null && this.edit == edit)
+			return this;
+		VariableNode node = new VariableNode(edit, value, children, childCount, valueCount);
+		node.sortedKeys = sortedKeys;
+		node.valueKeys = valueKeys;
+		node.valueIndex = valueIndex;
+		node.numericKeys = numericKeys;
+		return node;
+	}
+
+	/**
+	 * Replaces a child of this node.
+	 *
+	 * @param edit the edit token of the caller, {@code null} to never modify in place.
+	 * @param key the key of the child.
+	 * @param oldChild the current child, {@code null} if there is none.
+	 * @param newChild the new child, {@code null} to remove the child.
+	 * @param valueCountChange the change in values of the subtree caused by this replacement.
+	 * @return the node with the new child.
+	 */
+	VariableNode setChild(@Nullable Object edit, String key, @Nullable Object oldChild, @Nullable Object newChild, int valueCountChange) {
+		VariableNode node = editable(edit);
+		// A child changed in place may have lost or gained its value
+		if (newChild == oldChild || hasValue(oldChild) != hasValue(newChild))
+			node.valueKeys = null;
+		if (newChild == null) {
+			node.children = node.children.remove(edit, key);
+			node.childCount--;
+			node.sortedKeys = null;
+			NumericIndices numericKeys = node.numericKeys;
+			int index;
+			if (numericKeys != null && (index = NumericIndices.parse(key)) != -1)
+				node.numericKeys = numericKeys.remove(edit, index);
+		} else if (oldChild == null) {
+			node.children = node.children.put(edit, key.intern(), newChild);
+			node.childCount++;
+			node.sortedKeys = null;
+			NumericIndices numericKeys = node.numericKeys;
+			int index;
+			if (numericKeys != null && (index = NumericIndices.parse(key)) != -1)
+				node.numericKeys = numericKeys.add(edit, index);
+		} else {
+			node.children = node.children.put(edit, key, newChild);
+		}
+		node.valueCount += valueCountChange;
+		ListValueIndex valueIndex = node.valueIndex;
+		if (valueIndex != null)
+			node.valueIndex = valueIndex.update(edit, key, oldChild, newChild);
+		return node;
+	}
+
+	/**
+	 * @return the keys of the children of this node in variable name order.
+	 */
+	String[] sortedKeys() {
+		String[] keys = sortedKeys;
+		if (keys == null) {
+			keys = new String[childCount];
+			children.copyTo(keys, new Object[childCount], 0);
+			VariablesMap.sortVariableNames(keys);
+			sortedKeys = keys;
+		}
+		return keys;
+	}
+
+	/**
+	 * @return the keys of the children of this node that have a value of their own,
+	 * i.e. the indices of the list variable, in variable name order.
+	 */
+	String[] valueKeys() {
+		String[] keys = valueKeys;
+		if (keys == null) {
+			String[] sortedKeys = sortedKeys();
+			keys = new String[sortedKeys.length];
+			int size = 0;
+			for (String key : sortedKeys) {
+				if (hasValue(children.get(key)))
+					keys[size++] = key;
+			}
+			if (size != keys.length)
+				keys = Arrays.copyOf(keys, size);
+			valueKeys = keys;
+		}
+		return keys;
+	}
+
+	/**
+	 * @param after the index to start after, {@code 0} to find the lowest free index.
+	 * @return the lowest numeric index after the given one that is not a key of a child of this node.
+	 */
+	int nextFreeIndex(int after) {
+		NumericIndices keys = numericKeys;
+		if (keys == null) {
+			String[] childKeys = new String[childCount];
+			children.copyTo(childKeys, new Object[childCount], 0);
+			Object edit = new Object();
+			keys = NumericIndices.EMPTY;
+			for (String key : childKeys) {
+				int index = NumericIndices.parse(key);
+				if (index != -1)
+					keys = keys.add(edit, index);
+			}
+			numericKeys = keys;
+		}
+		return keys.nextFree(after);
+	}
+
+	/**
+	 * Finds the keys of the children that are equal to the given value, as compared by
+	 * {@link org.skriptlang.skript.lang.comparator.Comparators}, using an index of the values of the children.
+	 *
+	 * @param value the value to find.
+	 * @param minSize the amount of children from which on this node is indexed.
+	 * @return the keys of the matching children in no particular order,
+	 * or {@code null} if they can't be found using an index.
+	 */
+	@Nullable
+	List<String> findValue(Object value, int minSize) {
+		ListValueIndex index = valueIndex;
+		if (index == null) {
+			if (minSize <= 0 || childCount < minSize)
+				return null;
+			valueIndex = index = ListValueIndex.build(this);
+		}
+		List<String> candidates = index.find(value);
+		if (candidates == null)
+			return null;
+		List<String> keys = new ArrayList<>(candidates.size());
+		for (String key : candidates) {
+			if (Relation.EQUAL.isImpliedBy(Comparators.compare(children.get(key), value)))
+				keys.add(key);
+		}
+		return keys;
+	}
+
+	/**
+	 * @return the estimated amount of bytes used by this node and its children map,
+	 * not including the keys and values of its children.
+	 * @see VariablesMemoryReport
+	 */
+	long estimateSize() {
+		// seven references and two ints
+		long size = VariablesMemoryReport.objectSize(36) + children.estimateSize();
+		String[] sortedKeys = this.sortedKeys;
+		if (sortedKeys != null)
+			size += VariablesMemoryReport.arraySize(sortedKeys.length);
+		String[] valueKeys = this.valueKeys;
+		if (valueKeys != null)
+			size += VariablesMemoryReport.arraySize(valueKeys.length);
+		ListValueIndex valueIndex = this.valueIndex;
+		if (valueIndex != null)
+			size += valueIndex.estimateSize();
+		NumericIndices numericKeys = this.numericKeys;
+		if (numericKeys != null)
+			size += numericKeys.estimateSize();
+		return size;
+	}
+
+	/**
+	 * @param entry a child entry: a value, a node or {@code null}.
+	 * @return whether the given entry has a value of its own.
+	 */
+	private static boolean hasValue(@Nullable Object entry) {
+		if (entry instanceof VariablePager.PagedEntry)
+			return ((VariablePager.PagedEntry) entry).hasValue;
+		return entry instanceof VariableNode ? ((VariableNode) entry).value != null : entry != null;
+	}
+
+	/**
+	 * @param entry a child entry: a value, a node or {@code null}.
+	 * @return the amount of values in the given entry.
+	 */
+	static int valueCount(@Nullable Object entry) {
+		if (entry == null)
+			return 0;
+		if (entry instanceof VariablePager.PagedEntry)
+			return ((VariablePager.PagedEntry) entry).valueCount;
+		return entry instanceof VariableNode ? ((VariableNode) entry).valueCount : 1;
+	}
+
+	@Override
+	@Nullable
+	public Object get(@Nullable Object key) {
+		if (key == null)
+			return value;
+		if (!(key instanceof String))
+			return null;
+		Object child = children.get(key);
+		return child instanceof VariablePager.PagedEntry ? ((VariablePager.PagedEntry) child).read() : child;
+	}
+
+	@Override
+	public boolean containsKey(@Nullable Object key) {
+		return get(key) != null;
+	}
+
+	@Override
+	public int size() {
+		return value == null ? childCount : childCount + 1;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return value == null && childCount == 0;
+	}
+
+	@Override
+	public Set<Entry<String, Object>> entrySet() {
+		return new AbstractSet<Entry<String, Object>>() {
+			@Override
+			public Iterator<Entry<String, Object>> iterator() {
+				return new EntryIterator();
+			}
+
+			@Override
+			public int size() {
+				return VariableNode.this.size();
+			}
+		};
+	}
+
+	/**
+	 * Iterates over the own value of the node, then over its children in order.
+	 */
+	private final class EntryIterator implements Iterator<Entry<String, Object>> {
+
+		private final String[] keys = sortedKeys();
+		private int index = value == null ? 0 : -1;
+		@Nullable
+		private Entry<String, Object> next;
+
+		@Override
+		public boolean hasNext() {
+			while (next == null && index < keys.length) {
+				String key = index == -1 ? null : keys[index];
+				index++;
+				Object child = get(key);
+				if (child != null)
+					next = new SimpleImmutableEntry<>(key, child);
+			}
+			return next != null;
+		}
+
+		@Override
+		public Entry<String, Object> next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			Entry<String, Object> entry = next;
+			next = null;
+			assert entry != null;
+			return entry;
+		}
+
+	}
+
+}
@@ -0,0 +1,324 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import ch.njol.skript.Skript;
+import ch.njol.skript.registrations.Classes;
+import ch.njol.util.Closeable;
+import ch.njol.util.NonNullPair;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.Cleaner;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Keeps only the most recently used entries of global list variables in memory,
+ * e.g. {@code {data::%player's uuid%}} with its list entries, and moves the others to a file.
+ * <p>
+ * An entry that is moved to the file is replaced by a {@link PagedEntry} in the variable tree,
+ * which is read back from the file when the entry is used again.
+ * Reading and setting variables only marks their entries as used, entries are moved to the file
+ * on the main thread, see {@link VariablesMap#evict()}, as their values are serialized.
+ * Only entries with list entries of their own are paged, as a single value takes
+ * as much memory as its {@link PagedEntry} would.
+ * <p>
+ * The file is only a cache of the variables in memory, the variables are still saved by their storage.
+ * It's cleared when the pager is created. The region of an entry is reused for other entries once its
+ * {@link PagedEntry} can't be read anymore, i.e. it's no longer in the variable tree nor in any
+ * list value that is still in use, so the file only grows to hold the entries that can still be read.
+ */
+final class VariablePager implements Closeable {
+
+	/**
+	 * The index of the part of a variable name that is the key of a paged entry,
+	 * i.e. entries of top-level list variables are paged.
+	 */
+	static final int DEPTH = 1;
+
+	private final File file;
+	private final RandomAccessFile data;
+
+	/**
+	 * The maximum amount of entries to keep in memory.
+	 */
+	private final int maxEntries;
+
+	/**
+	 * The entries in memory, as the name of their list and their index, in order of last use.
+	 */
+	private final LinkedHashMap<NonNullPair<String, String>, Boolean> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+	/**
+	 * The offsets of the unused regions of the file by their length, guarded by {@link #data}.
+	 */
+	private final TreeMap<Integer, ArrayDeque<Long>> freeRegions = new TreeMap<>();
+
+	/**
+	 * Frees the region of a {@link PagedEntry} once it can't be read anymore.
+	 */
+	private final Cleaner cleaner = Cleaner.create();
+
+	/**
+	 * @param file the file to move entries to, which will be cleared.
+	 * @param maxEntries the maximum amount of entries to keep in memory.
+	 * @throws IOException if the file can't be opened.
+	 */
+	VariablePager(File file, int maxEntries) throws IOException {
+		this.file = file;
+		this.data = new RandomAccessFile(file, "rw");
+		this.maxEntries = maxEntries;
+		data.setLength(0);
+	}
+
+	/**
+	 * Marks an entry as used.
+	 *
+	 * @param list the name of the list variable.
+	 * @param index the index of the entry.
+	 */
+	synchronized void touch(String list, String index) {
+		entries.put(new NonNullPair<>(list, index), Boolean.TRUE);
+	}
+
+	/**
+	 * Moves the least recently used entries to the file, until at most the maximum amount is left in memory.
+	 * <p>
+	 * Must be called on the main thread, as the values of the entries are serialized.
+	 *
+	 * @param map the map to move entries out of.
+	 */
+	void evict(VariablesMap map) {
+		while (true) {
+			NonNullPair<String, String> entry;
+			synchronized (this) {
+				if (entries.size() <= maxEntries)
+					return;
+				Iterator<NonNullPair<String, String>> iterator = entries.keySet().iterator();
+				entry = iterator.next();
+				iterator.remove();
+			}
+			map.pageOut(entry.getFirst(), entry.getSecond(), this);
+		}
+	}
+
+	/**
+	 * Writes a node to the file.
+	 *
+	 * @param node the node of the entry.
+	 * @return the entry to replace the node with, or {@code null} if it can't be written.
+	 */
+	@Nullable
+	PagedEntry write(VariableNode node) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(node.valueCount);
+			if (!write(out, new ArrayList<>(), node))
+				return null;
+		} catch (IOException e) {
+			return null;
+		}
+
+		byte[] array = bytes.toByteArray();
+		int length = array.length;
+		long offset;
+		synchronized (data) {
+			try {
+				offset = allocate(length);
+				data.seek(offset);
+				data.write(array);
+			} catch (IOException e) {
+				Skript.exception(e, "Cannot write variables to " + file);
+				return null;
+			}
+		}
+		PagedEntry entry = new PagedEntry(this, offset, length, node.valueCount, node.value != null);
+		cleaner.register(entry, () -> free(offset, length));
+		return entry;
+	}
+
+	/**
+	 * Finds the smallest unused region of at least the given length, or the end of the file if there is none.
+	 * The rest of a larger region stays unused.
+	 *
+	 * @return the offset of the region.
+	 */
+	private long allocate(int length) throws IOException {
+		assert Thread.holdsLock(data);
+		Entry<Integer, ArrayDeque<Long>> region = freeRegions.ceilingEntry(length);
+		if (region == null)
+			return data.length();
+		ArrayDeque<Long> offsets = region.getValue();
+		long offset = offsets.poll();
+		if (offsets.isEmpty())
+			freeRegions.remove(region.getKey());
+		if (region.getKey() > length)
+			addFreeRegion(offset + length, region.getKey() - length);
+		return offset;
+	}
+
+	/**
+	 * Marks the region of a paged entry that can't be read anymore as unused.
+	 */
+	private void free(long offset, int length) {
+		synchronized (data) {
+			addFreeRegion(offset, length);
+		}
+	}
+
+	private void addFreeRegion(long offset, int length) {
+		freeRegions.computeIfAbsent(length, l -> new ArrayDeque<>()).add(offset);
+	}
+
+	/**
+	 * Writes the values of a node and its children.
+	 *
+	 * @param path the parts of the name of the node, relative to the paged entry.
+	 * @return whether all values could be serialized.
+	 */
+	private static boolean write(DataOutputStream out, List<String> path, VariableNode node) throws IOException {
+		if (node.value != null && !write(out, path, node.value))
+			return false;
+		for (Entry<String, Object> child : node.entrySet()) {
+			String key = child.getKey();
+			if (key == null)
+				continue;
+			path.add(key);
+			Object value = child.getValue();
+			boolean written = value instanceof VariableNode ? write(out, path, (VariableNode) value) : write(out, path, value);
+			path.remove(path.size() - 1);
+			if (!written)
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean write(DataOutputStream out, List<String> path, Object value) throws IOException {
+		SerializedVariable.Value serialized = Classes.serialize(value);
+		if (serialized == null)
+			return false;
+		out.writeInt(path.size());
+		for (String part : path)
+			out.writeUTF(part);
+		out.writeUTF(serialized.type);
+		out.writeInt(serialized.data.length);
+		out.write(serialized.data);
+		return true;
+	}
+
+	/**
+	 * Reads a paged entry back from the file.
+	 *
+	 * @param entry the paged entry.
+	 * @return the node of the entry.
+	 */
+	VariableNode read(PagedEntry entry) {
+		byte[] array = new byte[entry.length];
+		synchronized (data) {
+			try {
+				data.seek(entry.offset);
+				data.readFully(array);
+			} catch (IOException e) {
+				throw Skript.exception(e, "Cannot read variables from " + file);
+			}
+		}
+
+		// Build the node in a map of its own, as if it was the top-level variable "_"
+		VariablesMap map = new VariablesMap();
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(array))) {
+			int values = in.readInt();
+			for (int i = 0; i < values; i++) {
+				String[] path = new String[in.readInt() + 1];
+				path[0] = "_";
+				for (int j = 1; j < path.length; j++)
+					path[j] = in.readUTF();
+				String type = in.readUTF();
+				byte[] value = new byte[in.readInt()];
+				in.readFully(value);
+				map.setVariable(path, Classes.deserialize(type, value));
+			}
+		} catch (IOException e) {
+			throw Skript.exception(e, "Cannot read variables from " + file);
+		}
+
+		Object node = map.getRoot().get("_");
+		assert node instanceof VariableNode : node;
+		return (VariableNode) node;
+	}
+
+	@Override
+	public void close() {
+		synchronized (data) {
+			try {
+				data.close();
+			} catch (IOException ignored) {}
+		}
+		//noinspection ResultOfMethodCallIgnored
+		file.delete();
+	}
+
+	/**
+	 * An entry of a list variable that was moved to the file, taking the place of its node in the variable tree.
+	 */
+	static final class PagedEntry {
+
+		private final VariablePager pager;
+		private final long offset;
+		private final int length;
+
+		/**
+		 * The amount of values of the entry, see {@link VariableNode#valueCount}.
+		 */
+		final int valueCount;
+
+		/**
+		 * Whether the entry has a value of its own.
+		 */
+		final boolean hasValue;
+
+		private PagedEntry(VariablePager pager, long offset, int length, int valueCount, boolean hasValue) {
+			this.pager = pager;
+			this.offset = offset;
+			this.length = length;
+			this.valueCount = valueCount;
+			this.hasValue = hasValue;
+		}
+
+		/**
+		 * @return the node of this entry, read from the file.
+		 */
+		VariableNode read() {
+			return pager.read(this);
+		}
+
+	}
+
+}
@@ -0,0 +1,134 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import ch.njol.skript.lang.Variable;
+import ch.njol.skript.lang.parser.ParserInstance;
+import org.eclipse.jdt.annotation.Nullable;
+import org.skriptlang.skript.lang.structure.Structure;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The slots of the local variables with a constant name in one {@link Structure},
+ * e.g. an event trigger or a function.
+ * <p>
+ * Slots are assigned while the structure is parsed, so a {@link Variable} can access
+ * its local variable by index into the frame of the running trigger, instead of by name.
+ * Only names without {@link Variable#SEPARATOR} get a slot, all other local variables
+ * are stored by name.
+ */
+public final class VariableSlots {
+
+	static {
+		ParserInstance.registerData(SlotData.class, SlotData::new);
+	}
+
+	/**
+	 * The slot of each name.
+	 */
+	private final Map<String, Integer> slots = new ConcurrentHashMap<>();
+
+	/**
+	 * The name of each slot.
+	 */
+	private volatile String[] names = new String[0];
+
+	/**
+	 * @return the slots of the structure that is currently being parsed,
+	 * or {@code null} if no structure is being parsed.
+	 */
+	@Nullable
+	public static VariableSlots current() {
+		ParserInstance parser = ParserInstance.get();
+		if (!parser.isActive())
+			return null;
+		Structure structure = parser.getCurrentStructure();
+		if (structure == null)
+			return null;
+		return parser.getData(SlotData.class).slots.computeIfAbsent(structure, s -> new VariableSlots());
+	}
+
+	/**
+	 * Gets the slot of a local variable name, assigning a new one if needed.
+	 *
+	 * @param name the name of the local variable, without the local variable token.
+	 * @return the slot, or {@code -1} if the name can't have a slot.
+	 */
+	public synchronized int getSlot(String name) {
+		if (name.contains(Variable.SEPARATOR))
+			return -1;
+		if (Variables.caseInsensitiveVariables)
+			name = name.toLowerCase(Locale.ENGLISH);
+
+		Integer slot = slots.get(name);
+		if (slot == null) {
+			String[] names = Arrays.copyOf(this.names, this.names.length + 1);
+			slot = names.length - 1;
+			names[slot] = name;
+			slots.put(name, slot);
+			this.names = names;
+		}
+		return slot;
+	}
+
+	/**
+	 * @param name the name of the local variable,
+	 *                in the form used by {@link VariablesMap}.
+	 * @return the slot of the name, or {@code -1} if it has none.
+	 */
+	int indexOf(String name) {
+		Integer slot = slots.get(name);
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 * @param slot the slot.
+	 * @return the name of the local variable of the given slot,
+	 * in the form used by {@link VariablesMap}.
+	 */
+	String getName(int slot) {
+		return names[slot];
+	}
+
+	/**
+	 * @return the amount of slots assigned so far.
+	 */
+	int size() {
+		return names.length;
+	}
+
+	/**
+	 * The slots of the structures parsed by a {@link ParserInstance}.
+	 */
+	private static final class SlotData extends ParserInstance.Data {
+
+		private final Map<Structure, VariableSlots> slots = new WeakHashMap<>();
+
+		public SlotData(ParserInstance parserInstance) {
+			super(parserInstance);
+		}
+
+	}
+
+}
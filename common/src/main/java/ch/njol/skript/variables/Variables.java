@@ -29,6 +29,8 @@ import ch.njol.skript.config.SectionNode;
 import ch.njol.skript.lang.Variable;
 import ch.njol.skript.log.SkriptLogger;
 import ch.njol.skript.registrations.Classes;
+import ch.njol.skript.util.Task;
+import ch.njol.skript.util.Timespan;
 import ch.njol.skript.variables.SerializedVariable.Value;
 import ch.njol.util.Kleenean;
 import ch.njol.util.NonNullPair;
@@ -40,14 +42,19 @@ import org.bukkit.configuration.serialization.ConfigurationSerialization;
 import org.bukkit.event.Event;
 import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
+import org.skriptlang.skript.lang.comparator.Comparators;
+import org.skriptlang.skript.lang.comparator.Relation;
 import org.skriptlang.skript.lang.converter.Converters;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Multimap;
 
+import java.io.File;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -56,15 +63,14 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Queue;
-import java.util.TreeMap;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.regex.Pattern;
+import java.util.function.UnaryOperator;
 
 /**
  * Handles all things related to variables.
@@ -133,6 +139,12 @@ public class Variables {
 		});
 	}
 
+	/**
+	 * The name of the file in Skript's folder that unused variables are moved to,
+	 * see {@link SkriptConfig#variablePagingSize}.
+	 */
+	private static final String PAGING_FILE_NAME = "variables-paging.dat";
+
 	/**
 	 * The variable storages configured.
 	 */
@@ -166,8 +178,7 @@ public class Variables {
 	 * @return whether the loading was successful.
 	 */
 	public static boolean load() {
-		assert variables.treeMap.isEmpty();
-		assert variables.hashMap.isEmpty();
+		assert variables.size() == 0;
 		assert STORAGES.isEmpty();
 
 		Config config = SkriptConfig.getConfig();
@@ -182,6 +193,9 @@ public class Variables {
 
 		Skript.closeOnDisable(Variables::close);
 
+		// No variables have been changed yet, so nothing is queued in the stripe used until now
+		stripes = createStripes(SkriptConfig.variableLockStripes.value());
+
 		// reports once per second how many variables were loaded. Useful to make clear that Skript is still doing something if it's loading many variables
 		Thread loadingLoggerThread = new Thread(() -> {
 			while (true) {
@@ -289,6 +303,26 @@ public class Variables {
 		} finally {
 			SkriptLogger.setNode(null);
 
+			// Page out unused list entries while the loaded variables are put into the variables map
+			int pagingSize = SkriptConfig.variablePagingSize.value();
+			if (pagingSize > 0) {
+				try {
+					VariablePager pager = new VariablePager(new File(Skript.getInstance().getDataFolder(), PAGING_FILE_NAME), pagingSize);
+					variables.setPager(pager);
+					// Closed after the storages, which may still read paged variables when saving
+					Skript.closeOnDisable(pager);
+					// Entries are only marked as used when they're read or set, and moved to the file on the main thread
+					new Task(Skript.getInstance(), 1, 1) {
+						@Override
+						public void run() {
+							variables.evict();
+						}
+					};
+				} catch (IOException e) {
+					Skript.exception(e, "Cannot create the variable paging file, all variables will be kept in memory");
+				}
+			}
+
 			// make sure to put the loaded variables into the variables map
 			int notStoredVariablesCount = onStoragesLoaded();
 			if (notStoredVariablesCount != 0) {
@@ -301,76 +335,158 @@ public class Variables {
 			loadingLoggerThread.interrupt();
 
 			saveThread.start();
+
+			// Make queued changes of stripes that aren't changed again soon, once per second
+			new Task(Skript.getInstance(), 20, 20) {
+				@Override
+				public void run() {
+					processChangeQueues();
+				}
+			};
 		}
 		return true;
 	}
 
-	/**
-	 * A pattern to split variable names using {@link Variable#SEPARATOR}.
-	 */
-	private static final Pattern VARIABLE_NAME_SPLIT_PATTERN = Pattern.compile(Pattern.quote(Variable.SEPARATOR));
-
 	/**
 	 * Splits the given variable name into its parts,
 	 * separated by {@link Variable#SEPARATOR}.
+	 * <p>
+	 * Like {@link String#split(String)}, trailing empty parts are not included.
 	 *
 	 * @param name the variable name.
 	 * @return the parts.
 	 */
 	public static String[] splitVariableName(String name) {
-		return VARIABLE_NAME_SPLIT_PATTERN.split(name);
+		int separatorLength = Variable.SEPARATOR.length();
+		int index = name.indexOf(Variable.SEPARATOR);
+		if (index == -1)
+			return new String[] {name};
+
+		int parts = 1;
+		for (; index != -1; index = name.indexOf(Variable.SEPARATOR, index + separatorLength))
+			parts++;
+
+		String[] split = new String[parts];
+		int start = 0;
+		for (int i = 0; i < parts - 1; i++) {
+			int end = name.indexOf(Variable.SEPARATOR, start);
+			split[i] = name.substring(start, end);
+			start = end + separatorLength;
+		}
+		split[parts - 1] = name.substring(start);
+
+		while (parts > 0 && split[parts - 1].isEmpty())
+			parts--;
+		return parts == split.length ? split : Arrays.copyOf(split, parts);
+	}
+
+	/**
+	 * Splits the given variable name into the parts it is stored by,
+	 * lowercased if {@link #caseInsensitiveVariables} is enabled.
+	 * <p>
+	 * For a constant variable name, this only has to be done once,
+	 * see {@link #getVariable(String[], Event, boolean)}.
+	 *
+	 * @param name the variable name.
+	 * @return the parts of the name.
+	 */
+	public static String[] toVariablePath(String name) {
+		return splitVariableName(caseInsensitiveVariables ? name.toLowerCase(Locale.ENGLISH) : name);
+	}
+
+	/**
+	 * Like {@link #toVariablePath(String)}, for a name consisting of
+	 * a constant prefix and a separator, followed by the rest of the name.
+	 *
+	 * @param prefix the parts of the prefix, from {@link #toVariablePath(String)}.
+	 * @param rest the rest of the name.
+	 * @return the parts of the whole name.
+	 */
+	public static String[] toVariablePath(String[] prefix, String rest) {
+		if (rest.isEmpty())
+			return prefix;
+		String[] restPath = toVariablePath(rest);
+		String[] path = Arrays.copyOf(prefix, prefix.length + restPath.length);
+		System.arraycopy(restPath, 0, path, prefix.length, restPath.length);
+		return path;
 	}
 
 	/**
-	 * A lock for reading and writing variables.
+	 * A lock for all global variables. Its read lock is held while changing the variables of a {@link Stripe},
+	 * so changes to different stripes don't block each other, and its write lock blocks all changes.
 	 */
-	static final ReadWriteLock variablesLock = new ReentrantReadWriteLock(true);
+	static final ReentrantReadWriteLock variablesLock = new ReentrantReadWriteLock(true);
+
+	/**
+	 * The stripes the global variables are divided into by the first part of their name,
+	 * replaced by the configured amount of stripes when loading.
+	 *
+	 * @see SkriptConfig#variableLockStripes
+	 */
+	private static volatile Stripe[] stripes = {new Stripe()};
 
 	/**
 	 * The {@link VariablesMap} storing global variables,
-	 * must be locked with {@link #variablesLock}.
+	 * must be locked with the lock of the {@link Stripe} of a variable, or {@link #variablesLock}, for writing.
+	 * Reading doesn't need any locking.
 	 */
-	static final VariablesMap variables = new VariablesMap();
+	static final VariablesMap variables = new VariablesMap(true);
 
 	/**
-	 * A map storing all local variables,
+	 * A map storing the frames of all local variables,
 	 * indexed by their {@link Event}.
 	 */
-	private static final Map<Event, VariablesMap> localVariables = new ConcurrentHashMap<>();
+	private static final Map<Event, VariableFrame> localVariables = new ConcurrentHashMap<>();
 
 	/**
-	 * Gets the {@link TreeMap} of all global variables.
-	 * <p>
-	 * Remember to lock with {@link #getReadLock()} and to not make any changes!
+	 * The expirations of global variables set with a lifetime.
+	 *
+	 * @see #setVariable(String[], Object, Timespan)
 	 */
-	static TreeMap<String, Object> getVariables() {
-		return variables.treeMap;
-	}
+	private static final VariableExpiry expiry = new VariableExpiry();
+
+	/**
+	 * The task deleting expired variables, started when the first variable with a lifetime is set.
+	 */
+	@Nullable
+	private static volatile Task expiryTask;
+
+	/**
+	 * The feed passing changes of global variables on to subscribers.
+	 */
+	private static final VariableChangeFeed changeFeed = new VariableChangeFeed();
 
 	/**
-	 * Gets the {@link Map} of all global variables.
+	 * Gets a snapshot of all global variables, as a sorted {@link Map}
+	 * in the same format as the value of a list variable.
 	 * <p>
-	 * This map cannot be modified.
-	 * Remember to lock with {@link #getReadLock()}!
+	 * This takes constant time, and the returned map won't change afterwards,
+	 * so it can be read at leisure while variables keep being changed.
+	 * It contains every change whose {@link SerializedVariable} has been queued for saving before calling this,
+	 * and any change not in it is queued for saving afterwards.
 	 */
-	static Map<String, Object> getVariablesHashMap() {
-		return Collections.unmodifiableMap(variables.hashMap);
+	static Map<String, Object> getVariables() {
+		return variables.getRoot();
 	}
 
 	/**
-	 * Gets the lock for reading variables.
-	 *
-	 * @return the lock.
+	 * Estimates the memory used by the global variables.
+	 * <p>
+	 * This goes through all global variables, so it shouldn't be called often,
+	 * but it doesn't block changes to variables while doing so.
 	 *
-	 * @see #variablesLock
+	 * @return the report.
 	 */
-	static Lock getReadLock() {
-		return variablesLock.readLock();
+	public static VariablesMemoryReport getMemoryReport() {
+		return VariablesMemoryReport.create(variables.getRoot(), STORAGES);
 	}
 
 	/**
 	 * Removes local variables associated with given event and returns them,
 	 * if they exist.
+	 * <p>
+	 * This copies the variables into a map, use {@link #removeLocalVariables(Event)}
+	 * to only pass them on to {@link #setLocalVariables(Event, Object)}.
 	 *
 	 * @param event the event.
 	 * @return the local variables from the event,
@@ -378,6 +494,20 @@ public class Variables {
 	 */
 	@Nullable
 	public static VariablesMap removeLocals(Event event) {
+		VariableFrame frame = localVariables.remove(event);
+		return frame == null ? null : frame.toMap();
+	}
+
+	/**
+	 * Removes local variables associated with given event and returns them as they are,
+	 * to be set again with {@link #setLocalVariables(Event, Object)}.
+	 *
+	 * @param event the event.
+	 * @return the local variables from the event,
+	 * or {@code null} if the event had no local variables.
+	 */
+	@Nullable
+	public static Object removeLocalVariables(Event event) {
 		return localVariables.remove(event);
 	}
 
@@ -390,18 +520,35 @@ public class Variables {
 	 * Warning: this can overwrite local variables!
 	 *
 	 * @param event the event.
-	 * @param map the new local variables.
+	 * @param map the new local variables, from {@link #removeLocalVariables(Event)},
+	 *               {@link #copyLocalVariables(Event)} or {@link #removeLocals(Event)}.
 	 */
 	public static void setLocalVariables(Event event, @Nullable Object map) {
-		if (map != null) {
-			localVariables.put(event, (VariablesMap) map);
+		if (map instanceof VariablesMap) {
+			localVariables.put(event, VariableFrame.of((VariablesMap) map));
+		} else if (map != null) {
+			localVariables.put(event, (VariableFrame) map);
 		} else {
-			removeLocals(event);
+			localVariables.remove(event);
 		}
 	}
 
 	/**
-	 * Creates a copy of the {@link VariablesMap} for local variables
+	 * Starts new local variables for the given event, which will be accessed
+	 * by the variables of the structure with the given slots.
+	 * <p>
+	 * This is optional, but avoids moving variables that were set by name
+	 * into their slots later on, e.g. for function parameters.
+	 *
+	 * @param event the event.
+	 * @param slots the slots of the structure.
+	 */
+	public static void createLocals(Event event, VariableSlots slots) {
+		localVariables.put(event, new VariableFrame(slots));
+	}
+
+	/**
+	 * Creates a copy of the local variables
 	 * in an event.
 	 *
 	 * @param event the event to copy local variables from.
@@ -409,7 +556,7 @@ public class Variables {
 	 */
 	@Nullable
 	public static Object copyLocalVariables(Event event) {
-		VariablesMap from = localVariables.get(event);
+		VariableFrame from = localVariables.get(event);
 		if (from == null)
 			return null;
 
@@ -442,34 +589,120 @@ public class Variables {
 		}
 
 		if (local) {
-			VariablesMap map = localVariables.get(event);
-			if (map == null)
+			VariableFrame frame = localVariables.get(event);
+			if (frame == null)
 				return null;
 
-			return map.getVariable(n);
+			return frame.getVariable(n);
 		} else {
-			// Prevent race conditions from returning variables with incorrect values
-			if (!changeQueue.isEmpty()) {
-				// Gets the last VariableChange made
-				VariableChange variableChange = changeQueue.stream()
-						.filter(change -> change.name.equals(n))
-						.reduce((first, second) -> second)
-								// Gets last value, as iteration is from head to tail,
-								//  and adding occurs at the tail (and we want the most recently added)
-						.orElse(null);
-
-				if (variableChange != null) {
-					return variableChange.value;
-				}
+			// Changes that couldn't be applied yet are more recent than the stored value
+			Map<String, VariableChange> pendingChanges = getStripe(n).pendingChanges;
+			VariableChange pendingChange = pendingChanges.isEmpty() ? null : pendingChanges.get(n);
+			if (pendingChange != null)
+				return pendingChange.value;
+
+			return variables.getVariable(n);
+		}
+	}
+
+	/**
+	 * Returns the internal value of the requested variable.
+	 *
+	 * @param path the parts of the variable's name, from {@link #toVariablePath(String)}.
+	 * @param event if {@code local} is {@code true}, this is the event
+	 *                 the local variable resides in.
+	 * @param local if this variable is a local or global variable.
+	 * @return see {@link #getVariable(String, Event, boolean)}.
+	 */
+	@Nullable
+	public static Object getVariable(String[] path, @Nullable Event event, boolean local) {
+		if (local) {
+			VariableFrame frame = localVariables.get(event);
+			if (frame == null)
+				return null;
+
+			return frame.getVariable(path);
+		}
+
+		Map<String, VariableChange> pendingChanges = getStripe(path).pendingChanges;
+		if (!pendingChanges.isEmpty()) {
+			VariableChange pendingChange = pendingChanges.get(String.join(Variable.SEPARATOR, path));
+			if (pendingChange != null)
+				return pendingChange.value;
+		}
+		return variables.getVariable(path);
+	}
+
+	/**
+	 * Gets the indices of a list variable that are set, in order.
+	 * <p>
+	 * For a list variable from {@link #getVariable(String, Event, boolean)}, the indices are cached
+	 * until the list changes, so reading an unchanged list again doesn't go through its entries.
+	 *
+	 * @param list the value of a list variable.
+	 * @return the indices, which must not be modified.
+	 */
+	public static String[] getListIndices(Map<String, ?> list) {
+		if (list instanceof VariableNode)
+			return ((VariableNode) list).valueKeys();
+
+		List<String> indices = new ArrayList<>(list.size());
+		for (Entry<String, ?> entry : list.entrySet()) {
+			Object value = entry.getValue();
+			if (value instanceof Map)
+				value = ((Map<?, ?>) value).get(null);
+			if (entry.getKey() != null && value != null)
+				indices.add(entry.getKey());
+		}
+		return indices.toArray(new String[0]);
+	}
+
+	/**
+	 * Finds the indices of a list variable whose value is equal to the given value,
+	 * as compared by {@link Comparators}. Entries with list entries of their own never match.
+	 * <p>
+	 * For a list variable from {@link #getVariable(String, Event, boolean)} with at least
+	 * as many entries as the {@link SkriptConfig#listValueIndexSize list value index size},
+	 * the entries are found using an index of their values instead of comparing every entry,
+	 * as long as all values of the list are strings, numbers or booleans.
+	 *
+	 * @param list the value of a list variable.
+	 * @param value the value to find.
+	 * @param all whether to find all matching indices, or only the first one in the order of the list.
+	 * @return the matching indices, in no particular order if all are found.
+	 */
+	public static List<String> findIndices(Map<String, ?> list, Object value, boolean all) {
+		if (list instanceof VariableNode) {
+			List<String> indices = ((VariableNode) list).findValue(value, getListValueIndexSize());
+			if (indices != null) {
+				if (all || indices.size() <= 1)
+					return indices;
+				String[] sorted = indices.toArray(new String[0]);
+				VariablesMap.sortVariableNames(sorted);
+				return Collections.singletonList(sorted[0]);
 			}
+		}
 
-			try {
-				variablesLock.readLock().lock();
-				return variables.getVariable(n);
-			} finally {
-				variablesLock.readLock().unlock();
+		List<String> indices = new ArrayList<>();
+		for (Entry<String, ?> entry : list.entrySet()) {
+			String index = entry.getKey();
+			if (index != null && Relation.EQUAL.isImpliedBy(Comparators.compare(entry.getValue(), value))) {
+				indices.add(index);
+				if (!all)
+					break;
 			}
 		}
+		return indices;
+	}
+
+	/**
+	 * @return the amount of entries from which on lists are indexed by their values,
+	 * see {@link SkriptConfig#listValueIndexSize}. When testing, lists are indexed even if the index is disabled,
+	 * so the tests cover it with the default config.
+	 */
+	private static int getListValueIndexSize() {
+		int size = SkriptConfig.listValueIndexSize.value();
+		return size <= 0 && Skript.testing() ? 2 : size;
 	}
 
 	/**
@@ -501,28 +734,483 @@ public class Variables {
 			name = name.toLowerCase(Locale.ENGLISH);
 		}
 
-		// Check if conversion is needed due to ClassInfo#getSerializeAs
 		if (value != null) {
 			assert !name.endsWith("::*");
+			value = convertToSerializable(value);
+		}
+
+		if (local) {
+			assert event != null : name;
+
+			// Get the frame and set the variable in it
+			VariableFrame frame = localVariables.computeIfAbsent(event, e -> new VariableFrame(null));
+			frame.setVariable(name, value);
+		} else {
+			setVariable(name, value);
+		}
+	}
+
+	/**
+	 * Sets a variable.
+	 *
+	 * @param path the parts of the variable's name, from {@link #toVariablePath(String)}.
+	 * @param value the variable's value, {@code null} to delete the variable.
+	 * @param event if {@code local} is {@code true}, this is the event
+	 *                 the local variable resides in.
+	 * @param local if this variable is a local or global variable.
+	 * @see #setVariable(String, Object, Event, boolean)
+	 */
+	public static void setVariable(String[] path, @Nullable Object value, @Nullable Event event, boolean local) {
+		if (value != null) {
+			assert path.length == 0 || !path[path.length - 1].equals("*");
+			value = convertToSerializable(value);
+		}
+
+		if (local) {
+			assert event != null : Arrays.toString(path);
+
+			VariableFrame frame = localVariables.computeIfAbsent(event, e -> new VariableFrame(null));
+			frame.setVariable(path, value);
+		} else {
+			setVariable(String.join(Variable.SEPARATOR, path), path, value);
+		}
+	}
+
+	/**
+	 * Sets a global variable that is deleted again after the given time,
+	 * e.g. for a cooldown, so scripts don't have to loop through such variables to delete the old ones.
+	 * <p>
+	 * Setting or deleting the variable again before it expires cancels its expiration.
+	 * Expired variables are deleted on the main thread, at most a tick late.
+	 * The lifetime is only kept in memory, so a variable that was saved doesn't expire
+	 * after a restart until it's set with a lifetime again.
+	 *
+	 * @param path the parts of the variable's name, from {@link #toVariablePath(String)}.
+	 *                Must not be a list variable.
+	 * @param value the variable's value.
+	 * @param lifetime the time after which the variable is deleted.
+	 * @see #setVariable(String[], Object, Event, boolean)
+	 */
+	public static void setVariable(String[] path, Object value, Timespan lifetime) {
+		assert path.length == 0 || !path[path.length - 1].equals("*") : Arrays.toString(path);
+
+		String name = String.join(Variable.SEPARATOR, path);
+		value = convertToSerializable(value);
+		long lifetimeMillis = Math.max(1, lifetime.getAs(Timespan.TimePeriod.MILLISECOND));
+		Stripe stripe = getStripe(path);
+		if (stripe.tryLock()) {
+			try {
+				// Queued changes came first, so they can't cancel the expiration
+				processChangeQueue(stripe);
+				// Scheduled together with the change, so no other change can come in between
+				variables.setVariable(path, value);
+				expiry.schedule(name, path, lifetimeMillis);
+				saveVariableChange(name, value);
+			} finally {
+				stripe.unlock();
+			}
+		} else {
+			// The expiration is scheduled when the queued change is made
+			queueVariableChange(stripe, new VariableChange(name, value, lifetimeMillis));
+		}
 
-			ClassInfo<?> ci = Classes.getSuperClassInfo(value.getClass());
-			Class<?> sas = ci.getSerializeAs();
+		if (expiryTask == null) {
+			synchronized (expiry) {
+				if (expiryTask == null) {
+					expiryTask = new Task(Skript.getInstance(), 1, 1) {
+						@Override
+						public void run() {
+							deleteExpiredVariables();
+						}
+					};
+				}
+			}
+		}
+	}
 
-			if (sas != null) {
-				value = Converters.convert(value, sas);
-				assert value != null : ci + ", " + sas;
+	/**
+	 * Deletes the global variables whose lifetime is over, all at once.
+	 * If the variables are locked, this is tried again on the next tick.
+	 */
+	private static void deleteExpiredVariables() {
+		if (!expiry.advance() || !variablesLock.writeLock().tryLock())
+			return;
+		try {
+			// Queued changes came first, and may have cancelled expirations
+			processChangeQueue();
+			List<SerializedVariable> deletions = new ArrayList<>();
+			for (VariableExpiry.Expiration expiration : expiry.takeDue()) {
+				if (variables.getVariable(expiration.path) == null)
+					continue;
+				variables.setVariable(expiration.path, null);
+				deletions.add(serialize(expiration.name, null));
+				changeFeed.publish(expiration.name, null);
 			}
+			// Hand the whole batch to the save thread at once
+			saveQueue.addAll(deletions);
+		} finally {
+			variablesLock.writeLock().unlock();
 		}
+	}
+
+	/**
+	 * Atomically replaces the value of a variable with a value computed from its current value.
+	 * <p>
+	 * For a global variable, this is done in a single write, which is saved only once.
+	 * Concurrent calls of this method and of the other read-modify-write methods of this class
+	 * don't lose each other's changes, but a plain {@link #setVariable(String[], Object, Event, boolean)}
+	 * may still be overwritten by a computation that started before it.
+	 * If the variable is locked, the computation is queued like the changes of
+	 * {@link #setVariable(String[], Object, Event, boolean)}, and the function is applied again
+	 * to the value the variable has once the queued change is made. The function may thus be called
+	 * more than once, and may be called while the variables are locked, so it must not block
+	 * and must not have side effects.
+	 *
+	 * @param path the parts of the variable's name, from {@link #toVariablePath(String)}.
+	 *                Must not be a list variable.
+	 * @param function computes the new value from the current value, which is {@code null}
+	 *                    if the variable is not set. Returns {@code null} to delete the variable,
+	 *                    or the current value to leave it unchanged.
+	 * @param event if {@code local} is {@code true}, this is the event
+	 *                 the local variable resides in.
+	 * @param local if this variable is a local or global variable.
+	 */
+	public static void compute(String[] path, UnaryOperator<Object> function, @Nullable Event event, boolean local) {
+		assert path.length == 0 || !path[path.length - 1].equals("*") : Arrays.toString(path);
 
 		if (local) {
-			assert event != null : name;
+			assert event != null : Arrays.toString(path);
+
+			VariableFrame frame = localVariables.computeIfAbsent(event, e -> new VariableFrame(null));
+			Object value = frame.getVariable(path);
+			Object newValue = apply(function, value);
+			if (newValue != value)
+				frame.setVariable(path, newValue);
+			return;
+		}
+
+		String name = String.join(Variable.SEPARATOR, path);
+		Stripe stripe = getStripe(path);
+		if (stripe.tryLock()) {
+			try {
+				// Queued changes came first, so they must be visible to the function
+				processChangeQueue(stripe);
+				computeVariable(name, function);
+			} finally {
+				stripe.unlock();
+			}
+			return;
+		}
+
+		// Until the queued computation is made, reads see its result on top of the other queued changes
+		while (true) {
+			VariableChange previous = stripe.pendingChanges.get(name);
+			Object value = previous != null ? previous.value : variables.getVariable(path);
+			Object newValue = apply(function, value);
+			if (newValue == value)
+				return;
+			VariableChange change = new VariableChange(name, newValue, 0, function, null);
+			// Only queued if no other change of the variable was queued meanwhile, otherwise computed again on top of it
+			if (queueVariableChange(stripe, change, previous))
+				return;
+		}
+	}
+
+	/**
+	 * Applies a function given to {@link #compute(String[], UnaryOperator, Event, boolean)}
+	 * to the current value of a global variable, and saves the change.
+	 * <p>
+	 * The stripe of the variable, or all variables, must be locked.
+	 *
+	 * @param name the variable name.
+	 * @param function the function.
+	 */
+	private static void computeVariable(String name, UnaryOperator<Object> function) {
+		Object value = variables.getVariable(name);
+		Object newValue = apply(function, value);
+		if (newValue != value) {
+			expiry.cancel(name);
+			variables.setVariable(name, newValue);
+			saveVariableChange(name, newValue);
+		}
+	}
+
+	/**
+	 * Atomically adds values to a list variable, like {@link #compute(String[], UnaryOperator, Event, boolean)}.
+	 * Each value is set at the lowest numeric index that is not in use yet, starting at {@code 1}.
+	 * <p>
+	 * If the list variable is locked, the values are queued and added once the queued changes are made,
+	 * so they are not seen until then.
+	 *
+	 * @param path the parts of the list variable's name, from {@link #toVariablePath(String)},
+	 *                ending with {@code *}.
+	 * @param values the values to add.
+	 * @param event if {@code local} is {@code true}, this is the event
+	 *                 the local variable resides in.
+	 * @param local if this variable is a local or global variable.
+	 */
+	public static void appendToList(String[] path, Object[] values, @Nullable Event event, boolean local) {
+		assert path.length > 0 && path[path.length - 1].equals("*") : Arrays.toString(path);
+		if (values.length == 0)
+			return;
+
+		if (local) {
+			assert event != null : Arrays.toString(path);
+
+			VariableFrame frame = localVariables.computeIfAbsent(event, e -> new VariableFrame(null));
+			Object list = frame.getVariable(path);
+			int index = 0;
+			for (Object value : values) {
+				index = nextFreeIndex(list, index);
+				String[] entryPath = entryPath(path, index);
+				frame.setVariable(entryPath, convertToSerializable(value));
+			}
+			return;
+		}
+
+		Object[] serializableValues = new Object[values.length];
+		for (int i = 0; i < values.length; i++)
+			serializableValues[i] = convertToSerializable(values[i]);
+
+		Stripe stripe = getStripe(path);
+		if (stripe.tryLock()) {
+			try {
+				processChangeQueue(stripe);
+				appendToList(path, serializableValues);
+			} finally {
+				stripe.unlock();
+			}
+			return;
+		}
+
+		// The free indices are only known once the changes queued before are made
+		stripe.changeQueue.add(new VariableChange(String.join(Variable.SEPARATOR, path), null, 0, null, serializableValues));
+	}
+
+	/**
+	 * Adds values to a global list variable, and saves the changes.
+	 * <p>
+	 * The stripe of the variable, or all variables, must be locked.
+	 *
+	 * @param path the parts of the list variable's name, ending with {@code *}.
+	 * @param values the values to add, which are already serializable.
+	 */
+	private static void appendToList(String[] path, Object[] values) {
+		Object list = variables.getVariable(path);
+		int index = 0;
+		for (Object value : values) {
+			index = nextFreeIndex(list, index);
+			String[] entryPath = entryPath(path, index);
+			String name = String.join(Variable.SEPARATOR, entryPath);
+			expiry.cancel(name);
+			variables.setVariable(entryPath, value);
+			saveVariableChange(name, value);
+		}
+	}
+
+	/**
+	 * Sets many global variables at once.
+	 * <p>
+	 * The variables are changed while the variables are locked only once,
+	 * and all changes are handed to the save thread in one batch.
+	 * A list variable, i.e. a name ending with {@code ::*}, can be deleted as a whole,
+	 * which is saved as a single record, see {@link #deleteSubtree(String[])}.
+	 * Unlike {@link #setVariable(String, Object, Event, boolean)}, this waits for the variables
+	 * if they're locked instead of queueing the changes, as queued changes would be seen one by one,
+	 * e.g. a deleted list variable before its new entries are set. The variables are only locked briefly.
+	 *
+	 * @param values the new values by the names of the variables, a value of {@code null} deletes the variable.
+	 *                  The changes are made in the iteration order of the map.
+	 */
+	public static void setAll(Map<String, ?> values) {
+		if (values.isEmpty())
+			return;
+		List<VariableChange> changes = new ArrayList<>(values.size());
+		for (Entry<String, ?> entry : values.entrySet()) {
+			String name = entry.getKey();
+			if (caseInsensitiveVariables)
+				name = name.toLowerCase(Locale.ENGLISH);
+			Object value = entry.getValue();
+			if (value != null) {
+				assert !name.endsWith("::*") : name;
+				value = convertToSerializable(value);
+			}
+			changes.add(new VariableChange(name, value));
+		}
+		setAll(changes);
+	}
+
+	/**
+	 * Deletes all entries of a global list variable, including their own list entries.
+	 * <p>
+	 * The whole list is removed from the variables at once, regardless of its size,
+	 * and the deletion is saved as a single record of the list variable,
+	 * instead of a record for each of its entries, by the storages that
+	 * {@link VariablesStorage#supportsListDeletion() support it}.
+	 *
+	 * @param path the parts of the list variable's name, from {@link #toVariablePath(String)},
+	 *                ending with {@code *}.
+	 */
+	public static void deleteSubtree(String[] path) {
+		assert path.length > 1 && path[path.length - 1].equals("*") : Arrays.toString(path);
+		setAll(Collections.singletonList(new VariableChange(String.join(Variable.SEPARATOR, path), null)));
+	}
+
+	/**
+	 * Replaces all entries of a global list variable with the given entries,
+	 * like {@link #deleteSubtree(String[])} followed by setting each entry, all at once.
+	 *
+	 * @param path the parts of the list variable's name, from {@link #toVariablePath(String)},
+	 *                ending with {@code *}.
+	 * @param entries the new values by their index, which may contain {@link Variable#SEPARATOR}
+	 *                   to set a list entry of an entry. A value of {@code null} is skipped.
+	 */
+	public static void replaceSubtree(String[] path, Map<String, ?> entries) {
+		assert path.length > 1 && path[path.length - 1].equals("*") : Arrays.toString(path);
+		String listName = String.join(Variable.SEPARATOR, path);
+		String prefix = listName.substring(0, listName.length() - 1);
+		List<VariableChange> changes = new ArrayList<>(entries.size() + 1);
+		changes.add(new VariableChange(listName, null));
+		for (Entry<String, ?> entry : entries.entrySet()) {
+			Object value = entry.getValue();
+			if (value == null)
+				continue;
+			String index = entry.getKey();
+			if (caseInsensitiveVariables)
+				index = index.toLowerCase(Locale.ENGLISH);
+			changes.add(new VariableChange(prefix + index, convertToSerializable(value)));
+		}
+		setAll(changes);
+	}
 
-			// Get the variables map and set the variable in it
-			VariablesMap map = localVariables.computeIfAbsent(event, e -> new VariablesMap());
-			map.setVariable(name, value);
+	/**
+	 * Makes the given changes to global variables while holding the lock of their stripe,
+	 * or of all variables if they're in different stripes, waiting for the lock if needed.
+	 *
+	 * @param changes the changes, with values that are already serializable.
+	 */
+	private static void setAll(List<VariableChange> changes) {
+		Stripe stripe = getStripe(changes.get(0).name);
+		for (VariableChange change : changes) {
+			if (getStripe(change.name) != stripe) {
+				stripe = null;
+				break;
+			}
+		}
+
+		// Not queued, as queued changes are only seen together once they're made
+		if (stripe != null) {
+			stripe.lock();
 		} else {
-			setVariable(name, value);
+			variablesLock.writeLock().lock();
+		}
+		try {
+			// Queued changes came first
+			if (stripe != null) {
+				processChangeQueue(stripe);
+			} else {
+				processChangeQueue();
+			}
+			List<SerializedVariable> serialized = new ArrayList<>(changes.size());
+			for (VariableChange change : changes) {
+				expiry.cancel(change.name);
+				serialized.add(serializeChange(change.name, change.value));
+				variables.setVariable(change.name, change.value);
+				changeFeed.publish(change.name, change.value);
+			}
+			// Hand the whole batch to the save thread at once
+			saveQueue.addAll(serialized);
+		} finally {
+			if (stripe != null) {
+				stripe.unlock();
+			} else {
+				variablesLock.writeLock().unlock();
+			}
+		}
+	}
+
+	/**
+	 * @param list the current value of the list variable.
+	 * @param index the last index that was used, {@code 0} if none was used yet.
+	 * @return the next index after the given one that is not in use.
+	 */
+	private static int nextFreeIndex(@Nullable Object list, int index) {
+		// The list can find its free index without going through its indices
+		if (list instanceof VariableNode)
+			return ((VariableNode) list).nextFreeIndex(index);
+
+		Map<?, ?> map = list instanceof Map ? (Map<?, ?>) list : null;
+		while (true) {
+			index++;
+			if (map == null || !map.containsKey("" + index))
+				return index;
+		}
+	}
+
+	/**
+	 * @return the path of the given index of the list variable with the given path.
+	 */
+	private static String[] entryPath(String[] path, int index) {
+		String[] entryPath = path.clone();
+		entryPath[entryPath.length - 1] = "" + index;
+		return entryPath;
+	}
+
+	/**
+	 * Applies a function given to {@link #compute(String[], UnaryOperator, Event, boolean)},
+	 * converting a new value if needed due to {@link ClassInfo#getSerializeAs()}.
+	 */
+	@Nullable
+	private static Object apply(UnaryOperator<Object> function, @Nullable Object value) {
+		Object newValue = function.apply(value);
+		return newValue == null || newValue == value ? newValue : convertToSerializable(newValue);
+	}
+
+	/**
+	 * Returns the value of a local variable by its slot.
+	 *
+	 * @param event the event the local variable resides in.
+	 * @param slots the slots of the structure of the accessing variable.
+	 * @param slot the slot of the variable, from {@link VariableSlots#getSlot(String)}.
+	 * @return the value, or {@code null} if the variable is not set.
+	 * @see #getVariable(String, Event, boolean)
+	 */
+	@Nullable
+	public static Object getLocalVariable(Event event, VariableSlots slots, int slot) {
+		VariableFrame frame = localVariables.get(event);
+		if (frame == null)
+			return null;
+		return frame.get(slots, slot);
+	}
+
+	/**
+	 * Sets a local variable by its slot.
+	 *
+	 * @param event the event the local variable resides in.
+	 * @param slots the slots of the structure of the accessing variable.
+	 * @param slot the slot of the variable, from {@link VariableSlots#getSlot(String)}.
+	 * @param value the new value, {@code null} to delete the variable.
+	 * @see #setVariable(String, Object, Event, boolean)
+	 */
+	public static void setLocalVariable(Event event, VariableSlots slots, int slot, @Nullable Object value) {
+		if (value != null)
+			value = convertToSerializable(value);
+		localVariables.computeIfAbsent(event, e -> new VariableFrame(slots)).set(slots, slot, value);
+	}
+
+	/**
+	 * Converts the given value if needed due to {@link ClassInfo#getSerializeAs()},
+	 * and replaces it by a {@link SharedValues shared} instance if there is one.
+	 */
+	private static Object convertToSerializable(Object value) {
+		ClassInfo<?> ci = Classes.getSuperClassInfo(value.getClass());
+		Class<?> sas = ci.getSerializeAs();
+
+		if (sas != null) {
+			value = Converters.convert(value, sas);
+			assert value != null : ci + ", " + sas;
 		}
+		return SharedValues.share(value);
 	}
 
 	/**
@@ -532,28 +1220,133 @@ public class Variables {
 	 * @param value the value, or {@code null} to delete the variable.
 	 */
 	static void setVariable(String name, @Nullable Object value) {
-		boolean gotLock = variablesLock.writeLock().tryLock();
-		if (gotLock) {
+		setVariable(name, splitVariableName(name), value);
+	}
+
+	/**
+	 * Sets the given global variable name to the given value.
+	 *
+	 * @param name the variable name.
+	 * @param path the parts of the variable name.
+	 * @param value the value, or {@code null} to delete the variable.
+	 */
+	private static void setVariable(String name, String[] path, @Nullable Object value) {
+		Stripe stripe = getStripe(path);
+		if (stripe.tryLock()) {
 			try {
-				// Set the variable
-				variables.setVariable(name, value);
-				// ..., save the variable change
-				saveVariableChange(name, value);
-				// ..., and process all previously queued changes
-				processChangeQueue();
+				// Queued changes came first, so they must not overwrite this change
+				processChangeQueue(stripe);
+				// Set the variable, which cancels its expiration
+				expiry.cancel(name);
+				SerializedVariable serialized = serializeChange(name, value);
+				variables.setVariable(path, value);
+				// ..., and save the variable change
+				saveVariableChange(serialized, value);
 			} finally {
-				variablesLock.writeLock().unlock();
+				stripe.unlock();
 			}
 		} else {
-			// Couldn't acquire variable write lock, queue the change (blocking here is a bad idea)
-			queueVariableChange(name, value);
+			// Couldn't acquire the lock of the stripe, queue the change (blocking here is a bad idea)
+			queueVariableChange(stripe, name, value);
 		}
 	}
 
 	/**
-	 * Changes to variables that have not yet been performed.
+	 * A part of the global variables, holding all variables whose name starts with the same part,
+	 * e.g. {@code {economy::*}}, so variables in different stripes can be changed at the same time.
 	 */
-	static final Queue<VariableChange> changeQueue = new ConcurrentLinkedQueue<>();
+	private static final class Stripe {
+
+		/**
+		 * Held while changing variables of this stripe, together with the read lock of {@link #variablesLock}.
+		 */
+		private final Lock lock = new ReentrantLock();
+
+		/**
+		 * Changes to variables of this stripe that have not yet been performed.
+		 */
+		private final Queue<VariableChange> changeQueue = new ConcurrentLinkedQueue<>();
+
+		/**
+		 * The most recent change in the {@link #changeQueue} for each variable name,
+		 * so reads can see queued changes without scanning the queue.
+		 */
+		private final Map<String, VariableChange> pendingChanges = new ConcurrentHashMap<>();
+
+		/**
+		 * Acquires the locks for changing variables of this stripe, if it can be done without waiting.
+		 *
+		 * @return whether the locks were acquired.
+		 */
+		boolean tryLock() {
+			// Let a thread waiting for all variables go first, as it would never get them if the stripes are busy
+			if (variablesLock.hasQueuedThreads() || !variablesLock.readLock().tryLock())
+				return false;
+			if (lock.tryLock())
+				return true;
+			variablesLock.readLock().unlock();
+			return false;
+		}
+
+		/**
+		 * Acquires the locks for changing variables of this stripe, waiting for them if needed.
+		 */
+		void lock() {
+			variablesLock.readLock().lock();
+			lock.lock();
+		}
+
+		void unlock() {
+			lock.unlock();
+			variablesLock.readLock().unlock();
+		}
+
+	}
+
+	/**
+	 * @param amount the requested amount of stripes.
+	 * @return the given amount of stripes, rounded up to a power of two.
+	 */
+	private static Stripe[] createStripes(int amount) {
+		int length = Integer.highestOneBit(Math.max(1, Math.min(amount, 1 << 16)) * 2 - 1);
+		Stripe[] stripes = new Stripe[length];
+		for (int i = 0; i < length; i++)
+			stripes[i] = new Stripe();
+		return stripes;
+	}
+
+	/**
+	 * @param path the parts of a variable name.
+	 * @return the stripe of the variable.
+	 */
+	private static Stripe getStripe(String[] path) {
+		Stripe[] stripes = Variables.stripes;
+		if (stripes.length == 1)
+			return stripes[0];
+		return getStripe(stripes, path.length == 0 ? 0 : path[0].hashCode());
+	}
+
+	/**
+	 * @param name a variable name.
+	 * @return the stripe of the variable.
+	 */
+	private static Stripe getStripe(String name) {
+		Stripe[] stripes = Variables.stripes;
+		if (stripes.length == 1)
+			return stripes[0];
+		// The hash code of the first part of the name, like String#hashCode, without splitting the name
+		int end = name.indexOf(Variable.SEPARATOR);
+		if (end == -1)
+			end = name.length();
+		int hash = 0;
+		for (int i = 0; i < end; i++)
+			hash = 31 * hash + name.charAt(i);
+		return getStripe(stripes, hash);
+	}
+
+	private static Stripe getStripe(Stripe[] stripes, int hash) {
+		return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+	}
 
 	/**
 	 * A variable change name-value pair.
@@ -571,6 +1364,26 @@ public class Variables {
 		@Nullable
 		public final Object value;
 
+		/**
+		 * The time after which the variable expires in milliseconds, or {@code 0} if it doesn't expire.
+		 */
+		public final long lifetime;
+
+		/**
+		 * The function computing the new value from the value the variable has when the change is made,
+		 * see {@link #compute(String[], UnaryOperator, Event, boolean)}.
+		 * The {@link #value} is its result at the time the change was queued, which reads see until then.
+		 */
+		@Nullable
+		public final UnaryOperator<Object> function;
+
+		/**
+		 * The values to add to the list variable with the {@link #name}, see
+		 * {@link #appendToList(String[], Object[], Event, boolean)}. Such a change isn't seen by reads until it's made.
+		 */
+		@Nullable
+		public final Object[] appendedValues;
+
 		/**
 		 * Creates a new {@link VariableChange} with the given name and value.
 		 *
@@ -578,8 +1391,36 @@ public class Variables {
 		 * @param value the new variable value.
 		 */
 		public VariableChange(String name, @Nullable Object value) {
+			this(name, value, 0);
+		}
+
+		/**
+		 * Creates a new {@link VariableChange} of a variable that expires after the given time.
+		 *
+		 * @param name the variable name.
+		 * @param value the new variable value.
+		 * @param lifetime the time after which the variable expires in milliseconds, or {@code 0}.
+		 */
+		public VariableChange(String name, @Nullable Object value, long lifetime) {
+			this(name, value, lifetime, null, null);
+		}
+
+		/**
+		 * Creates a new {@link VariableChange}.
+		 *
+		 * @param name the variable name.
+		 * @param value the new variable value.
+		 * @param lifetime the time after which the variable expires in milliseconds, or {@code 0}.
+		 * @param function the function computing the new value when the change is made, or {@code null}.
+		 * @param appendedValues the values to add to the list variable, or {@code null}.
+		 */
+		public VariableChange(String name, @Nullable Object value, long lifetime,
+							  @Nullable UnaryOperator<Object> function, @Nullable Object[] appendedValues) {
 			this.name = name;
 			this.value = value;
+			this.lifetime = lifetime;
+			this.function = function;
+			this.appendedValues = appendedValues;
 		}
 
 	}
@@ -588,28 +1429,107 @@ public class Variables {
 	 * Queues a variable change. Only to be called when direct write is not
 	 * possible, but thread cannot be allowed to block.
 	 *
+	 * @param stripe the stripe of the variable.
 	 * @param name the variable name.
 	 * @param value the new value.
 	 */
-	private static void queueVariableChange(String name, @Nullable Object value) {
-		changeQueue.add(new VariableChange(name, value));
+	private static void queueVariableChange(Stripe stripe, String name, @Nullable Object value) {
+		queueVariableChange(stripe, new VariableChange(name, value));
+	}
+
+	/**
+	 * Queues a variable change, see {@link #queueVariableChange(Stripe, String, Object)}.
+	 *
+	 * @param stripe the stripe of the variable.
+	 * @param change the change.
+	 */
+	private static void queueVariableChange(Stripe stripe, VariableChange change) {
+		// Queued while it's the pending change, so changes are queued in the same order as they're seen
+		stripe.pendingChanges.compute(change.name, (name, previous) -> {
+			stripe.changeQueue.add(change);
+			return change;
+		});
+	}
+
+	/**
+	 * Queues a variable change, unless the pending change of the variable is no longer the given one.
+	 *
+	 * @param stripe the stripe of the variable.
+	 * @param change the change.
+	 * @param expected the pending change the new change was made from, or {@code null} if there was none.
+	 * @return whether the change was queued.
+	 */
+	private static boolean queueVariableChange(Stripe stripe, VariableChange change, @Nullable VariableChange expected) {
+		return stripe.pendingChanges.compute(change.name, (name, previous) -> {
+			if (previous != expected)
+				return previous;
+			stripe.changeQueue.add(change);
+			return change;
+		}) == change;
 	}
 
 	/**
-	 * Processes all entries in variable change queue.
+	 * Processes all entries in the variable change queues of all stripes.
 	 * <p>
-	 * Note that caller must acquire write lock before calling this,
+	 * Note that caller must acquire the write lock of {@link #variablesLock} before calling this,
 	 * then release it.
 	 */
 	static void processChangeQueue() {
+		for (Stripe stripe : stripes)
+			processChangeQueue(stripe);
+	}
+
+	/**
+	 * Processes the variable change queues of all stripes that can be locked without waiting,
+	 * so changes that were queued don't wait for the next change of their stripe.
+	 */
+	private static void processChangeQueues() {
+		for (Stripe stripe : stripes) {
+			if (stripe.changeQueue.isEmpty() || !stripe.tryLock())
+				continue;
+			try {
+				processChangeQueue(stripe);
+			} finally {
+				stripe.unlock();
+			}
+		}
+	}
+
+	/**
+	 * Processes all entries in the variable change queue of a stripe.
+	 * <p>
+	 * Note that caller must acquire the locks of the stripe, or the write lock of {@link #variablesLock},
+	 * before calling this, then release them.
+	 */
+	private static void processChangeQueue(Stripe stripe) {
 		while (true) { // Run as long as we still have changes
-			VariableChange change = changeQueue.poll();
+			VariableChange change = stripe.changeQueue.poll();
 			if (change == null)
 				break;
 
-			// Set and save variable
+			if (change.appendedValues != null) {
+				appendToList(splitVariableName(change.name), change.appendedValues);
+				continue;
+			}
+			if (change.function != null) {
+				// Computed again from the value the variable has now
+				computeVariable(change.name, change.function);
+				stripe.pendingChanges.remove(change.name, change);
+				continue;
+			}
+
+			// Set and save variable, and replace its expiration
+			SerializedVariable serialized = serializeChange(change.name, change.value);
 			variables.setVariable(change.name, change.value);
-			saveVariableChange(change.name, change.value);
+			if (change.lifetime > 0) {
+				expiry.schedule(change.name, splitVariableName(change.name), change.lifetime);
+			} else {
+				expiry.cancel(change.name);
+			}
+			saveVariableChange(serialized, change.value);
+
+			// Only forget the pending change if it wasn't superseded by a newer one
+			stripe.pendingChanges.remove(change.name, change);
 		}
 	}
 
@@ -657,6 +1577,7 @@ public class Variables {
 
 		if (value == null)
 			return false;
+		value = SharedValues.share(value);
 
 		synchronized (TEMP_VARIABLES) {
 			Map<String, NonNullPair<Object, VariablesStorage>> tvs = TEMP_VARIABLES.get();
@@ -732,6 +1653,39 @@ public class Variables {
 		return false;
 	}
 
+	/**
+	 * Deletes the entries of a list variable that were loaded from a storage before,
+	 * when the storage loads the record of a deletion of the whole list,
+	 * see {@link #deleteSubtree(String[])}.
+	 * <p>
+	 * Must only be used while variables are loaded
+	 * when Skript is starting. Must be called on Bukkit's main thread.
+	 *
+	 * @param name the name of the list variable, ending with {@code ::*}.
+	 * @param source the storage the deletion came from.
+	 */
+	static void listDeleted(String name, VariablesStorage source) {
+		assert Bukkit.isPrimaryThread();
+		assert name.endsWith(Variable.SEPARATOR + "*") : name;
+
+		String prefix = name.substring(0, name.length() - 1);
+		synchronized (TEMP_VARIABLES) {
+			Map<String, NonNullPair<Object, VariablesStorage>> tvs = TEMP_VARIABLES.get();
+			if (tvs != null) {
+				// Entries from other storages are not affected by the order of this storage's records
+				tvs.entrySet().removeIf(tv -> tv.getValue().getSecond() == source && tv.getKey().startsWith(prefix));
+				return;
+			}
+		}
+
+		variablesLock.writeLock().lock();
+		try {
+			variables.setVariable(name, null);
+		} finally {
+			variablesLock.writeLock().unlock();
+		}
+	}
+
 	/**
 	 * Stores loaded variables into the variables map
 	 * and the appropriate databases.
@@ -758,6 +1712,8 @@ public class Variables {
 				for (Entry<String, NonNullPair<Object, VariablesStorage>> tv : tvs.entrySet()) {
 					if (!variableLoaded(tv.getKey(), tv.getValue().getFirst(), tv.getValue().getSecond()))
 						unstoredVariables++;
+					// Keep the memory used while loading within the paging size
+					variables.evict();
 				}
 
 				for (VariablesStorage variablesStorage : STORAGES)
@@ -817,7 +1773,60 @@ public class Variables {
 	 * @param value the value of the variable.
 	 */
 	private static void saveVariableChange(String name, @Nullable Object value) {
-		saveQueue.add(serialize(name, value));
+		saveVariableChange(serialize(name, value), value);
+	}
+
+	/**
+	 * Adds the serialized variable change to the {@link #saveQueue}.
+	 *
+	 * @param variable the serialized variable change.
+	 * @param value the value of the variable.
+	 */
+	private static void saveVariableChange(SerializedVariable variable, @Nullable Object value) {
+		saveQueue.add(variable);
+		changeFeed.publish(variable.name, value);
+	}
+
+	/**
+	 * Serializes a change of a global variable before it's made.
+	 * The deletion of a list variable keeps the list that is deleted,
+	 * see {@link SerializedVariable#listDeletion(String, Map)}.
+	 * <p>
+	 * The stripe of the variable, or all variables, must be locked.
+	 *
+	 * @param name the variable name.
+	 * @param value the new value of the variable.
+	 * @return the serialized variable change.
+	 */
+	@SuppressWarnings("unchecked")
+	private static SerializedVariable serializeChange(String name, @Nullable Object value) {
+		if (value == null && name.endsWith(Variable.SEPARATOR + "*"))
+			return SerializedVariable.listDeletion(name, (Map<String, Object>) variables.getVariable(name));
+		return serialize(name, value);
+	}
+
+	/**
+	 * Subscribes to the changes of global variables, e.g. to mirror them elsewhere
+	 * without having to read the variables again to find out what changed.
+	 * <p>
+	 * The changes are buffered, and delivered to the listener in a batch once per tick on the main thread.
+	 * Changes that are made while the variables are locked are only published once they're applied,
+	 * which may be a little later than the change was made.
+	 *
+	 * @param prefix the start of the names of the variables to receive the changes of, e.g. {@code "arena::"},
+	 *                  or an empty string for all variables. The deletion of a list containing these variables
+	 *                  is received as well.
+	 * @param capacity the maximum amount of changes to buffer between two deliveries.
+	 * @param policy what to do with changes that don't fit into the buffer.
+	 * @param listener the listener receiving the changes.
+	 * @return the subscription, which stops receiving changes when it's cancelled.
+	 */
+	public static VariableChangeFeed.Subscription subscribe(String prefix, int capacity,
+														 VariableChangeFeed.OverflowPolicy policy,
+														 VariableChangeFeed.Listener listener) {
+		if (caseInsensitiveVariables)
+			prefix = prefix.toLowerCase(Locale.ENGLISH);
+		return changeFeed.subscribe(prefix, capacity, policy, listener);
 	}
 
 	/**
@@ -840,6 +1849,11 @@ public class Variables {
 				// Save one variable change
 				SerializedVariable variable = saveQueue.take();
 
+				if (variable.isListDeletion()) {
+					saveListDeletion(variable);
+					continue;
+				}
+
 				for (VariablesStorage variablesStorage : STORAGES) {
 					if (variablesStorage.accept(variable.name)) {
 						variablesStorage.save(variable);
@@ -851,10 +1865,67 @@ public class Variables {
 		}
 	}, "Skript variable save thread");
 
+	/**
+	 * Saves the deletion of a list variable, whose entries may be stored in any storage.
+	 * Storages that {@link VariablesStorage#supportsListDeletion() support it} save the deletion as a whole,
+	 * the other storages are sent the deletion of each entry of the list they store.
+	 *
+	 * @param deletion the list deletion, see {@link SerializedVariable#isListDeletion()}.
+	 */
+	private static void saveListDeletion(SerializedVariable deletion) {
+		boolean allSupported = true;
+		for (VariablesStorage variablesStorage : STORAGES) {
+			if (variablesStorage.supportsListDeletion()) {
+				variablesStorage.save(deletion);
+			} else {
+				allSupported = false;
+			}
+		}
+		Map<String, Object> list = deletion.deletedList;
+		if (!allSupported && list != null)
+			saveEntryDeletions(deletion.name.substring(0, deletion.name.length() - 1), list);
+	}
+
+	/**
+	 * Sends the deletion of each entry of a deleted list variable to its storage,
+	 * unless the storage {@link VariablesStorage#supportsListDeletion() saved the deletion of the list}.
+	 *
+	 * @param prefix the name of the list variable without the {@code *}.
+	 * @param list the deleted list variable.
+	 */
+	@SuppressWarnings("unchecked")
+	private static void saveEntryDeletions(String prefix, Map<String, Object> list) {
+		for (Entry<String, Object> entry : list.entrySet()) {
+			String index = entry.getKey();
+			if (index == null)
+				continue; // The value of the list variable itself, which isn't deleted
+			String name = prefix + index;
+			Object value = entry.getValue();
+			if (value instanceof Map) {
+				Map<String, Object> entryList = (Map<String, Object>) value;
+				if (entryList.get(null) != null)
+					saveEntryDeletion(name);
+				saveEntryDeletions(name + Variable.SEPARATOR, entryList);
+			} else {
+				saveEntryDeletion(name);
+			}
+		}
+	}
+
+	private static void saveEntryDeletion(String name) {
+		for (VariablesStorage variablesStorage : STORAGES) {
+			if (variablesStorage.accept(name)) {
+				if (!variablesStorage.supportsListDeletion())
+					variablesStorage.save(new SerializedVariable(name, null));
+				break;
+			}
+		}
+	}
+
 	/**
 	 * Closes the variable systems:
 	 * <ul>
-	 *     <li>Process all changes left in the {@link #changeQueue}.</li>
+	 *     <li>Process all changes left in the change queues of the {@link Stripe}s.</li>
 	 *     <li>Stops the {@link #saveThread}.</li>
 	 * </ul>
 	 */
@@ -884,12 +1955,7 @@ public class Variables {
 	 * @return the amount of variables.
 	 */
 	public static int numVariables() {
-		try {
-			variablesLock.readLock().lock();
-			return variables.hashMap.size();
-		} finally {
-			variablesLock.readLock().unlock();
-		}
+		return variables.size();
 	}
 
 }
@@ -18,18 +18,18 @@
  */
 package ch.njol.skript.variables;
 
-import ch.njol.skript.lang.Variable;
 import ch.njol.util.StringUtils;
 import org.eclipse.jdt.annotation.Nullable;
 
+import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * A map for storing variables in a sorted and efficient manner.
+ * <p>
+ * Variables are stored in a tree of {@link VariableNode}s,
+ * branched by the parts of their name separated by {@link ch.njol.skript.lang.Variable#SEPARATOR}.
  */
 final class VariablesMap {
 
@@ -139,61 +139,190 @@ final class VariablesMap {
 	};
 
 	/**
-	 * The map that stores all non-list variables.
+	 * Sorts variable names in the order of {@link #VARIABLE_NAME_COMPARATOR}.
+	 * <p>
+	 * Each name is inspected once before sorting, so names that are plain numbers,
+	 * like most list indices, are compared as numbers, and names without digits
+	 * are compared as strings, instead of parsing both names on every comparison.
+	 *
+	 * @param names the names to sort.
+	 */
+	static void sortVariableNames(String[] names) {
+		SortKey[] sortKeys = new SortKey[names.length];
+		for (int i = 0; i < names.length; i++)
+			sortKeys[i] = new SortKey(names[i]);
+		Arrays.sort(sortKeys);
+		for (int i = 0; i < names.length; i++)
+			names[i] = sortKeys[i].name;
+	}
+
+	/**
+	 * A variable name with the form it's compared by, see {@link #sortVariableNames(String[])}.
+	 */
+	private static final class SortKey implements Comparable<SortKey> {
+
+		/**
+		 * The longest number that always fits into a {@code long}.
+		 */
+		private static final int MAX_NUMBER_LENGTH = 18;
+
+		private final String name;
+
+		/**
+		 * The value of the name if it's a non-negative integer without leading zeroes,
+		 * which {@link #VARIABLE_NAME_COMPARATOR} orders by value, otherwise {@code -1}.
+		 */
+		private final long number;
+
+		/**
+		 * Whether the name contains no digits,
+		 * so {@link #VARIABLE_NAME_COMPARATOR} orders it like {@link String#compareTo(String)}.
+		 */
+		private final boolean noDigits;
+
+		SortKey(String name) {
+			this.name = name;
+
+			int length = name.length();
+			int digits = 0;
+			long number = 0;
+			for (int i = 0; i < length; i++) {
+				char c = name.charAt(i);
+				if ('0' <= c && c <= '9') {
+					digits++;
+					number = number * 10 + (c - '0');
+				}
+			}
+			boolean isNumber = digits == length && length > 0 && length <= MAX_NUMBER_LENGTH
+				&& (length == 1 || name.charAt(0) != '0');
+			this.number = isNumber ? number : -1;
+			this.noDigits = digits == 0;
+		}
+
+		@Override
+		public int compareTo(SortKey other) {
+			if (number != -1 && other.number != -1)
+				return Long.compare(number, other.number);
+			if (noDigits && other.noDigits)
+				return name.compareTo(other.name);
+			return VARIABLE_NAME_COMPARATOR.compare(name, other.name);
+		}
+
+	}
+
+	/**
+	 * The edit token of this map, {@code null} if this map is read by other threads
+	 * while it is being modified, in which case nodes are never modified in place.
+	 * <p>
+	 * Nodes created by this map are owned by this token, and may be modified in place.
+	 * A copy shares all nodes, after which neither map may modify them in place,
+	 * so both maps get a new token.
+	 */
+	@Nullable
+	private Object edit;
+
+	private static final AtomicReferenceFieldUpdater<VariablesMap, VariableNode> ROOT_UPDATER =
+		AtomicReferenceFieldUpdater.newUpdater(VariablesMap.class, VariableNode.class, "root");
+
+	/**
+	 * The root of the variable tree, its children are the top-level variables.
+	 * <p>
+	 * In a shared map, variables with different top-level names may be changed at the same time,
+	 * so the root is only replaced if no other change replaced it in the meantime.
+	 */
+	private volatile VariableNode root;
+
+	/**
+	 * The pager moving unused entries of this map to a file, {@code null} to keep all entries in memory.
+	 */
+	@Nullable
+	private VariablePager pager;
+
+	/**
+	 * Creates a map that is only accessed by one thread at a time.
 	 */
-	final HashMap<String, Object> hashMap = new HashMap<>();
+	VariablesMap() {
+		this(false);
+	}
+
 	/**
-	 * The tree of variables, branched by the list structure of the variables.
+	 * @param shared whether this map is read by other threads while it is being modified.
 	 */
-	final TreeMap<String, Object> treeMap = new TreeMap<>();
+	VariablesMap(boolean shared) {
+		this.edit = shared ? null : new Object();
+		this.root = new VariableNode(edit);
+	}
 
 	/**
 	 * Returns the internal value of the requested variable.
 	 * <p>
 	 * <b>Do not modify the returned value!</b>
+	 * <p>
+	 * For a shared map, this may be called without any locking,
+	 * and a returned list variable won't change afterwards.
 	 *
 	 * @param name the name of the variable, possibly a list variable.
 	 * @return an {@link Object} for a normal variable or a
 	 * {@code Map<String, Object>} for a list variable,
 	 * or {@code null} if the variable is not set.
 	 */
-	@SuppressWarnings("unchecked")
 	@Nullable
 	Object getVariable(String name) {
-		if (!name.endsWith("*")) {
-			// Not a list variable, quick access from the hash map
-			return hashMap.get(name);
-		} else {
-			// List variable, search the tree branches
-			String[] split = Variables.splitVariableName(name);
-			Map<String, Object> parent = treeMap;
-
-			// Iterate over the parts of the variable name
-			for (int i = 0; i < split.length; i++) {
-				String n = split[i];
-				if (n.equals("*")) {
-					// End of variable name, return map
-					assert i == split.length - 1;
-					return parent;
-				}
+		return getVariable(Variables.splitVariableName(name));
+	}
 
-				// Check if the current (sub-)tree has the expected child node
-				Object childNode = parent.get(n);
-				if (childNode == null)
-					return null;
-
-				// Continue the iteration if the child node is a tree itself
-				if (childNode instanceof Map) {
-					// Continue iterating with the subtree
-					parent = (Map<String, Object>) childNode;
-					assert i != split.length - 1;
-				} else {
-					// ..., otherwise the list variable doesn't exist here
-					return null;
-				}
-			}
+	/**
+	 * Returns the internal value of the requested variable.
+	 *
+	 * @param path the parts of the name of the variable, see {@link Variables#splitVariableName(String)}.
+	 * @return see {@link #getVariable(String)}.
+	 */
+	@Nullable
+	Object getVariable(String[] path) {
+		if (path.length == 0)
 			return null;
+
+		// Walk down to the parent of the last part of the name
+		VariableNode node = root;
+		int last = path.length - 1;
+		for (int i = 0; i < last; i++) {
+			Object child = getChild(node, path, i);
+			if (!(child instanceof VariableNode))
+				return null;
+			node = (VariableNode) child;
+		}
+
+		if (path[last].equals("*"))
+			return node;
+
+		Object child = getChild(node, path, last);
+		if (child instanceof VariableNode)
+			return ((VariableNode) child).value;
+		return child;
+	}
+
+	/**
+	 * @param node the node.
+	 * @param path the parts of a variable name.
+	 * @param index the index of the part that is the key of the child.
+	 * @return the child of the given node, read back from the {@link #pager} if needed.
+	 */
+	@Nullable
+	private Object getChild(VariableNode node, String[] path, int index) {
+		Object child = node.children.get(path[index]);
+		VariablePager pager = this.pager;
+		if (pager == null || index != VariablePager.DEPTH)
+			return child;
+
+		if (child instanceof VariablePager.PagedEntry) {
+			VariablePager.PagedEntry entry = (VariablePager.PagedEntry) child;
+			child = entry.read();
+			// Keep the entry in memory, unless it was changed in the meantime, until it's evicted again
+			pageIn(path[0], path[1], entry, (VariableNode) child);
 		}
+		if (child instanceof VariableNode)
+			pager.touch(path[0], path[1]);
+		return child;
 	}
 
 	/**
@@ -201,171 +330,207 @@ final class VariablesMap {
 	 * <p>
 	 * This method accepts list variables,
 	 * but these may only be set to {@code null}.
+	 * <p>
+	 * For a shared map, calls for variables with the same top-level name must not run concurrently.
 	 *
 	 * @param name the variable name.
 	 * @param value the variable value, {@code null} to delete the variable.
 	 */
-	@SuppressWarnings("unchecked")
 	void setVariable(String name, @Nullable Object value) {
-		// First update the hash map easily
-		if (!name.endsWith("*")) {
-			if (value == null)
-				hashMap.remove(name);
-			else
-				hashMap.put(name, value);
-		}
+		setVariable(Variables.splitVariableName(name), value);
+	}
 
-		// Then update the tree map by going down the branches
-		String[] split = Variables.splitVariableName(name);
-		TreeMap<String, Object> parent = treeMap;
-
-		// Iterate over the parts of the variable name
-		for (int i = 0; i < split.length; i++) {
-			String childNodeName = split[i];
-			Object childNode = parent.get(childNodeName);
-
-			if (childNode == null) {
-				// Expected child node not found
-				if (i == split.length - 1) {
-					// End of the variable name reached, set variable if needed
-					if (value != null)
-						parent.put(childNodeName, value);
-
-					break;
-				} else if (value != null) {
-					// Create child node, add it to parent and continue iteration
-					childNode = new TreeMap<>(VARIABLE_NAME_COMPARATOR);
-
-					parent.put(childNodeName, childNode);
-					parent = (TreeMap<String, Object>) childNode;
-				} else {
-					// Want to set variable to null, bu variable is already null
-					break;
-				}
-			} else if (childNode instanceof TreeMap) {
-				// Child node found
-				TreeMap<String, Object> childNodeMap = ((TreeMap<String, Object>) childNode);
-
-				if (i == split.length - 1) {
-					// End of variable name reached, adjust child node accordingly
-					if (value == null)
-						childNodeMap.remove(null);
-					else
-						childNodeMap.put(null, value);
-
-					break;
-				} else if (i == split.length - 2 && split[i + 1].equals("*")) {
-					// Second to last part of variable name
-					assert value == null;
-
-					// Delete all indices of the list variable from hashMap
-					deleteFromHashMap(StringUtils.join(split, Variable.SEPARATOR, 0, i + 1), childNodeMap);
-
-					// If the list variable itself has a value ,
-					//  e.g. list `{mylist::3}` while variable `{mylist}` also has a value,
-					//  then adjust the parent for that
-					Object currentChildValue = childNodeMap.get(null);
-					if (currentChildValue == null)
-						parent.remove(childNodeName);
-					else
-						parent.put(childNodeName, currentChildValue);
-
-					break;
-				} else {
-					// Continue iteration
-					parent = childNodeMap;
-				}
-			} else {
-				// Ran into leaf node
-				if (i == split.length - 1) {
-					// If we arrived at the end of the variable name, update parent
-					if (value == null)
-						parent.remove(childNodeName);
-					else
-						parent.put(childNodeName, value);
-
-					break;
-				} else if (value != null) {
-					// Need to continue iteration, create new child node and put old value in it
-					TreeMap<String, Object> newChildNodeMap = new TreeMap<>(VARIABLE_NAME_COMPARATOR);
-					newChildNodeMap.put(null, childNode);
-
-					// Add new child node to parent
-					parent.put(childNodeName, newChildNodeMap);
-					parent = newChildNodeMap;
-				} else {
-					break;
-				}
-			}
+	/**
+	 * Sets the given variable to the given value.
+	 *
+	 * @param path the parts of the name of the variable, see {@link Variables#splitVariableName(String)}.
+	 * @param value the variable value, {@code null} to delete the variable.
+	 * @see #setVariable(String, Object)
+	 */
+	void setVariable(String[] path, @Nullable Object value) {
+		if (path.length == 0 || path[0].equals("*"))
+			return;
+		while (true) {
+			VariableNode root = this.root;
+			VariableNode newRoot = setChild(root, path, 0, value);
+			// Another top-level variable may have been changed meanwhile, then this change is made again on top of it
+			if (newRoot == root || ROOT_UPDATER.compareAndSet(this, root, newRoot))
+				break;
 		}
 	}
 
 	/**
-	 * Deletes all indices of a list variable from the {@link #hashMap}.
+	 * Makes this map keep only the most recently used entries of list variables in memory.
+	 * <p>
+	 * This map must be a shared map.
 	 *
-	 * @param parent the list variable prefix,
-	 *                  e.g. {@code list} for {@code list::*}.
-	 * @param current the map of the list variable.
+	 * @param pager the pager moving entries to a file.
 	 */
-	@SuppressWarnings("unchecked")
-	void deleteFromHashMap(String parent, TreeMap<String, Object> current) {
-		for (Entry<String, Object> e : current.entrySet()) {
-			if (e.getKey() == null)
-				continue;
-			String childName = parent + Variable.SEPARATOR + e.getKey();
-
-			// Remove from hashMap
-			hashMap.remove(childName);
-
-			// Recurse if needed
-			Object val = e.getValue();
-			if (val instanceof TreeMap) {
-				deleteFromHashMap(childName, (TreeMap<String, Object>) val);
-			}
-		}
+	void setPager(VariablePager pager) {
+		assert edit == null;
+		this.pager = pager;
+	}
+
+	/**
+	 * Moves the least recently used entries of list variables to the file of the {@link #pager},
+	 * until at most its maximum amount of entries is left in memory.
+	 * <p>
+	 * Reading and setting variables only marks their entries as used, so this must be called regularly.
+	 * Must be called on the main thread, as the values of the entries are serialized.
+	 */
+	void evict() {
+		VariablePager pager = this.pager;
+		if (pager != null)
+			pager.evict(this);
 	}
 
 	/**
-	 * Creates a copy of this map.
+	 * Moves an entry of a list variable to the file of the given pager, if it's in memory
+	 * and it isn't changed while it's being written.
 	 *
-	 * @return the copy.
+	 * @param list the name of the list variable.
+	 * @param index the index of the entry.
+	 * @param pager the pager.
 	 */
-	public VariablesMap copy() {
-		VariablesMap copy = new VariablesMap();
+	void pageOut(String list, String index, VariablePager pager) {
+		Object parent = root.children.get(list);
+		if (!(parent instanceof VariableNode))
+			return;
+		Object child = ((VariableNode) parent).children.get(index);
+		if (!(child instanceof VariableNode))
+			return;
+		VariablePager.PagedEntry entry = pager.write((VariableNode) child);
+		if (entry != null)
+			replaceEntry(list, index, child, entry);
+	}
 
-		copy.hashMap.putAll(hashMap);
+	/**
+	 * Puts an entry that was read back from a pager back into this map,
+	 * unless it was changed in the meantime.
+	 *
+	 * @param list the name of the list variable.
+	 * @param index the index of the entry.
+	 * @param entry the paged entry.
+	 * @param node the node read from the paged entry.
+	 */
+	private void pageIn(String list, String index, VariablePager.PagedEntry entry, VariableNode node) {
+		replaceEntry(list, index, entry, node);
+	}
+
+	/**
+	 * Replaces an entry of a list variable with an entry of the same values, unless it was changed in the meantime.
+	 */
+	private void replaceEntry(String list, String index, Object oldEntry, Object newEntry) {
+		int countChange = VariableNode.valueCount(newEntry) - VariableNode.valueCount(oldEntry);
+		while (true) {
+			VariableNode root = this.root;
+			Object parent = root.children.get(list);
+			if (!(parent instanceof VariableNode) || ((VariableNode) parent).children.get(index) != oldEntry)
+				return;
+			VariableNode newParent = ((VariableNode) parent).setChild(edit, index, oldEntry, newEntry, countChange);
+			if (ROOT_UPDATER.compareAndSet(this, root, root.setChild(edit, list, parent, newParent, countChange)))
+				return;
+		}
+	}
 
-		TreeMap<String, Object> treeMapCopy = copyTreeMap(treeMap);
-		copy.treeMap.putAll(treeMapCopy);
+	/**
+	 * @return the amount of non-list variables in this map.
+	 */
+	int size() {
+		return root.valueCount;
+	}
 
-		return copy;
+	/**
+	 * @return the root of the variable tree, which won't be modified
+	 * afterwards if this is a shared map.
+	 */
+	VariableNode getRoot() {
+		return root;
 	}
 
 	/**
-	 * Makes a deep copy of the given {@link TreeMap}.
-	 * <p>
-	 * The 'deep copy' means that each subtree of the given tree is copied
-	 * as well.
+	 * Sets the variable at the given path below the given node.
 	 *
-	 * @param original the original tree map.
-	 * @return the copy.
+	 * @param node the node.
+	 * @param path the parts of the variable name.
+	 * @param index the index of the part that is the key of the child to set.
+	 * @param value the new value, {@code null} to delete.
+	 * @return the node containing the change.
 	 */
-	@SuppressWarnings("unchecked")
-	private static TreeMap<String, Object> copyTreeMap(TreeMap<String, Object> original) {
-		TreeMap<String, Object> copy = new TreeMap<>(VARIABLE_NAME_COMPARATOR);
+	private VariableNode setChild(VariableNode node, String[] path, int index, @Nullable Object value) {
+		String key = path[index];
+		Object child = node.children.get(key);
+		int oldCount = VariableNode.valueCount(child);
+		if (child instanceof VariablePager.PagedEntry)
+			child = ((VariablePager.PagedEntry) child).read();
+		Object newChild = set(child, path, index + 1, value);
+		if (pager != null && index == VariablePager.DEPTH && newChild instanceof VariableNode)
+			pager.touch(path[0], key);
+		int countChange = VariableNode.valueCount(newChild) - oldCount;
+		if (newChild == child && countChange == 0)
+			return node;
+		return node.setChild(edit, key, child, newChild, countChange);
+	}
 
-		for (Entry<String, Object> child : original.entrySet()) {
-			String key = child.getKey();
-			Object value = child.getValue();
+	/**
+	 * Sets the variable at the given path below the given child entry.
+	 *
+	 * @param entry the current entry: a value, a node, or {@code null}.
+	 * @param path the parts of the variable name.
+	 * @param index the index of the first part of the name below the entry.
+	 * @param value the new value, {@code null} to delete.
+	 * @return the new entry.
+	 */
+	@Nullable
+	private Object set(@Nullable Object entry, String[] path, int index, @Nullable Object value) {
+		if (index == path.length) {
+			// End of the variable name reached, this entry's own value is changed
+			if (!(entry instanceof VariableNode))
+				return value;
+			VariableNode node = (VariableNode) entry;
+			if (node.value == value)
+				return node;
+			node = node.editable(edit);
+			node.valueCount += (value == null ? 0 : 1) - (node.value == null ? 0 : 1);
+			node.value = value;
+			return node;
+		}
 
-			// Copy by recursion if the child is a TreeMap
-			if (value instanceof TreeMap) {
-				value = copyTreeMap((TreeMap<String, Object>) value);
-			}
+		if (index == path.length - 1 && path[index].equals("*")) {
+			// Deleting a list variable, only its own value remains
+			assert value == null;
+			return entry instanceof VariableNode ? ((VariableNode) entry).value : entry;
+		}
 
-			copy.put(key, value);
+		VariableNode node;
+		if (entry instanceof VariableNode) {
+			node = (VariableNode) entry;
+		} else if (value == null) {
+			// Nothing to delete below a value
+			return entry;
+		} else {
+			// The entry needs children, so it becomes a node holding the old value
+			node = new VariableNode(edit);
+			node.value = entry;
+			node.valueCount = entry == null ? 0 : 1;
 		}
 
+		node = setChild(node, path, index, value);
+		// A node without children is just its own value
+		return node.childCount == 0 ? node.value : node;
+	}
+
+	/**
+	 * Creates a copy of this map in constant time. Both maps share their nodes,
+	 * and a change to either map only copies the nodes on the path to the changed variable.
+	 *
+	 * @return the copy.
+	 */
+	public VariablesMap copy() {
+		VariablesMap copy = new VariablesMap();
+		copy.root = root;
+		if (edit != null)
+			edit = new Object();
 		return copy;
 	}
 
@@ -0,0 +1,232 @@
+/**
+ *   This file is part of Skript.
+ *
+ *  Skript is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  Skript is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with Skript.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ * Copyright Peter Güttinger, SkriptLang team and contributors
+ */
+package ch.njol.skript.variables;
+
+import ch.njol.skript.lang.Variable;
+import org.eclipse.jdt.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An estimate of the heap memory used by the global variables, see {@link Variables#getMemoryReport()}.
+ * <p>
+ * Sizes are estimated for a 64-bit JVM with compressed references.
+ * Values of unknown types are only counted as an empty object, as their contents are not known,
+ * and objects shared between variables, like the names of list indices, are counted for each use.
+ * Variables moved to a file by a {@link VariablePager} are counted, but use no memory.
+ * The memory used by the structure of the variable tree is included in the total
+ * and in the amount per top-level variable, but not in the amount per type or per storage.
+ */
+public final class VariablesMemoryReport {
+
+	private static final int HEADER_SIZE = 12;
+	private static final int ARRAY_HEADER_SIZE = 16;
+	private static final int REFERENCE_SIZE = 4;
+	private static final int ALIGNMENT = 8;
+
+	private long totalBytes;
+	private int variables;
+	private final Map<String, Long> bytesByName = new HashMap<>();
+	private final Map<Class<?>, Long> bytesByType = new HashMap<>();
+	private final Map<String, Long> bytesByStorage = new HashMap<>();
+
+	/**
+	 * The storages in the order they are checked for a variable,
+	 * or {@code null} if the first one accepts all variables.
+	 */
+	@Nullable
+	private final List<VariablesStorage> storages;
+
+	@Nullable
+	private final VariablesStorage firstStorage;
+
+	private VariablesMemoryReport(List<VariablesStorage> storages) {
+		this.firstStorage = storages.isEmpty() ? null : storages.get(0);
+		this.storages = firstStorage == null || firstStorage.acceptsAll() ? null : storages;
+	}
+
+	/**
+	 * Estimates the memory used by the given variable tree.
+	 *
+	 * @param root the root of the variable tree, which must not be modified while this runs.
+	 * @param storages the storages the variables are saved to.
+	 * @return the report.
+	 */
+	static VariablesMemoryReport create(VariableNode root, List<VariablesStorage> storages) {
+		VariablesMemoryReport report = new VariablesMemoryReport(storages);
+		report.totalBytes += root.estimateSize();
+		String[] keys = new String[root.childCount];
+		Object[] children = new Object[root.childCount];
+		root.children.copyTo(keys, children, 0);
+		for (int i = 0; i < keys.length; i++)
+			report.addEntry(keys[i], keys[i], report.storages == null ? null : keys[i], children[i]);
+		return report;
+	}
+
+	/**
+	 * Adds an entry of the variable tree and everything below it.
+	 *
+	 * @param topLevelName the first part of the name of the entry.
+	 * @param key the last part of the name of the entry.
+	 * @param name the name of the entry, {@code null} if it's not needed to find its storage.
+	 * @param entry the value or node of the entry.
+	 */
+	private void addEntry(String topLevelName, String key, @Nullable String name, Object entry) {
+		if (entry instanceof VariablePager.PagedEntry) {
+			// a reference, a long, two ints and a boolean
+			addBytes(topLevelName, stringSize(key) + objectSize(21));
+			variables += ((VariablePager.PagedEntry) entry).valueCount;
+			return;
+		}
+		if (!(entry instanceof VariableNode)) {
+			addBytes(topLevelName, stringSize(key));
+			addValue(topLevelName, name, entry);
+			return;
+		}
+
+		VariableNode node = (VariableNode) entry;
+		addBytes(topLevelName, stringSize(key) + node.estimateSize());
+		if (node.value != null)
+			addValue(topLevelName, name, node.value);
+
+		String[] keys = new String[node.childCount];
+		Object[] children = new Object[node.childCount];
+		node.children.copyTo(keys, children, 0);
+		for (int i = 0; i < keys.length; i++)
+			addEntry(topLevelName, keys[i], name == null ? null : name + Variable.SEPARATOR + keys[i], children[i]);
+	}
+
+	private void addValue(String topLevelName, @Nullable String name, Object value) {
+		long bytes = valueSize(value);
+		variables++;
+		addBytes(topLevelName, bytes);
+		bytesByType.merge(value.getClass(), bytes, Long::sum);
+
+		VariablesStorage storage = firstStorage;
+		if (name != null) {
+			assert storages != null;
+			storage = null;
+			for (VariablesStorage variablesStorage : storages) {
+				if (variablesStorage.accept(name)) {
+					storage = variablesStorage;
+					break;
+				}
+			}
+		}
+		if (storage != null)
+			bytesByStorage.merge(storage.databaseName, bytes, Long::sum);
+	}
+
+	private void addBytes(String topLevelName, long bytes) {
+		totalBytes += bytes;
+		bytesByName.merge(topLevelName, bytes, Long::sum);
+	}
+
+	/**
+	 * @return the estimated amount of bytes used by all global variables.
+	 */
+	public long getTotalBytes() {
+		return totalBytes;
+	}
+
+	/**
+	 * @return the amount of global variables.
+	 */
+	public int getVariables() {
+		return variables;
+	}
+
+	/**
+	 * @return the estimated amount of bytes used by each top-level variable and its list entries,
+	 * indexed by the first part of their name, e.g. {@code kills} for {@code {kills::%player%}}.
+	 */
+	public Map<String, Long> getBytesByName() {
+		return Collections.unmodifiableMap(bytesByName);
+	}
+
+	/**
+	 * @return the estimated amount of bytes used by the values of each type.
+	 */
+	public Map<Class<?>, Long> getBytesByType() {
+		return Collections.unmodifiableMap(bytesByType);
+	}
+
+	/**
+	 * @return the estimated amount of bytes used by the values saved to each storage,
+	 * indexed by the name of the storage. Values without a storage are not included.
+	 */
+	public Map<String, Long> getBytesByStorage() {
+		return Collections.unmodifiableMap(bytesByStorage);
+	}
+
+	/**
+	 * @return the estimated size of a value, not including objects it references.
+	 */
+	private static long valueSize(Object value) {
+		if (value instanceof Boolean || SharedValues.isShared(value))
+			return 0;
+		if (value instanceof String)
+			return stringSize((String) value);
+		if (value instanceof Long || value instanceof Double)
+			return objectSize(8);
+		if (value instanceof Number)
+			return objectSize(4);
+		return objectSize(0);
+	}
+
+	/**
+	 * @return the estimated size of a string.
+	 */
+	private static long stringSize(String string) {
+		boolean latin1 = true;
+		for (int i = 0; i < string.length() && latin1; i++)
+			latin1 = string.charAt(i) <= 0xFF;
+		// a reference, an int and two bytes
+		return objectSize(REFERENCE_SIZE + 6) + align(ARRAY_HEADER_SIZE + (long) string.length() * (latin1 ? 1 : 2));
+	}
+
+	/**
+	 * @param fieldBytes the size of the fields of the object.
+	 * @return the estimated size of an object.
+	 */
+	static long objectSize(int fieldBytes) {
+		return align(HEADER_SIZE + fieldBytes);
+	}
+
+	/**
+	 * @param length the length of an array of references.
+	 * @return the estimated size of the array.
+	 */
+	static long arraySize(int length) {
+		return align(ARRAY_HEADER_SIZE + (long) length * REFERENCE_SIZE);
+	}
+
+	private static long align(long size) {
+		return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+	}
+
+	@Override
+	public String toString() {
+		return variables + " variables using about " + totalBytes / 1024 + " KiB";
+	}
+
+}
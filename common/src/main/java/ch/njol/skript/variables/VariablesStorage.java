@@ -264,6 +264,18 @@ public abstract class VariablesStorage implements Closeable {
 	 */
 	protected abstract boolean requiresFile();
 
+	/**
+	 * Checks if this storage can save the deletion of a list variable as a single record,
+	 * see {@link SerializedVariable#isListDeletion()}.
+	 * <p>
+	 * Storages that can't are sent the deletion of each entry of the list they store instead.
+	 *
+	 * @return if this storage deletes all entries of a list variable when saving its deletion.
+	 */
+	protected boolean supportsListDeletion() {
+		return false;
+	}
+
 	/**
 	 * Gets the file needed for this variable storage from the given file name.
 	 * <p>
@@ -275,8 +287,7 @@ public abstract class VariablesStorage implements Closeable {
 	protected abstract File getFile(String fileName);
 
 	/**
-	 * Must be locked after {@link Variables#getReadLock()}
-	 * (if that lock is used at all).
+	 * Held while connecting, disconnecting and saving variables.
 	 */
 	protected final Object connectionLock = new Object();
 
@@ -332,6 +343,13 @@ public abstract class VariablesStorage implements Closeable {
 		};
 	}
 
+	/**
+	 * @return whether this storage accepts all variable names.
+	 */
+	boolean acceptsAll() {
+		return variableNamePattern == null;
+	}
+
 	/**
 	 * Checks if this variable storage accepts the given variable name.
 	 *
@@ -449,6 +467,9 @@ public abstract class VariablesStorage implements Closeable {
 	 * <p>
 	 * {@code type} and {@code value} are <i>both</i> {@code null}
 	 * iff this call is to delete the variable.
+	 * If this storage {@link #supportsListDeletion() supports it}, the deletion of a list variable,
+	 * whose name ends with {@code ::*}, deletes all of its entries stored in this storage,
+	 * see {@link SerializedVariable#isListDeletion()}.
 	 *
 	 * @param name the name of the variable.
 	 * @param type the type of the variable.
@@ -31,6 +31,14 @@ public class Bukkit {
 		return scheduler;
 	}
 
+	/**
+	 * Shuts down the scheduler, if it was created, letting its asynchronous tasks finish.
+	 */
+	public static void shutdown() {
+		if (scheduler != null)
+			scheduler.shutdown();
+	}
+
 	public static boolean isPrimaryThread() {
 		return Thread.currentThread().equals(primaryThread);
 	}
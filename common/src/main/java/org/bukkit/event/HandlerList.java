@@ -1,20 +1,41 @@
 package org.bukkit.event;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 
 public class HandlerList {
+	private static final RegisteredListener[] EMPTY = new RegisteredListener[0];
+	private static final Comparator<RegisteredListener> PRIORITY_ORDER =
+		Comparator.comparingInt(listener -> listener.getPriority().ordinal());
+
 	private final List<RegisteredListener> listeners = new ArrayList<>();
 
-	public void register(RegisteredListener handler) {
+	// Sorted by priority, replaced as a whole on every change so dispatching threads never see a partial update
+	private volatile RegisteredListener[] handlers = EMPTY;
+
+	public synchronized void register(RegisteredListener handler) {
 		listeners.add(handler);
+		bake();
+	}
+
+	public synchronized void unregister(Listener listener) {
+		if (listeners.removeIf((registeredListener) -> registeredListener.getListener() == listener))
+			bake();
 	}
 
-	public void unregister(Listener listener) {
-		listeners.removeIf((registeredListener) -> registeredListener.getListener() == listener);
+	public synchronized void bake() {
+		RegisteredListener[] baked = listeners.toArray(EMPTY);
+		// Arrays.sort is stable for objects, so registration order is kept within a priority
+		Arrays.sort(baked, PRIORITY_ORDER);
+		handlers = baked;
 	}
 
-	public List<RegisteredListener> getRegisteredListeners() {
-		return listeners;
+	/**
+	 * The returned array is shared and must not be modified.
+	 */
+	public RegisteredListener[] getRegisteredListeners() {
+		return handlers;
 	}
 }
@@ -59,15 +59,7 @@ public class PluginManager {
 	}
 
 	public void callEvent(Event event) {
-		HandlerList handlerList = event.getHandlers();
-		List<RegisteredListener> handlers = handlerList.getRegisteredListeners();
-
-		handlers.sort((a, b) -> {
-			int priorityA = a.getPriority().ordinal();
-			int priorityB = b.getPriority().ordinal();
-
-			return Integer.compare(priorityA, priorityB);
-		});
+		RegisteredListener[] handlers = event.getHandlers().getRegisteredListeners();
 
 		for (RegisteredListener handler : handlers) {
 			if (event instanceof Cancellable && ((Cancellable) event).isCancelled() && handler.isIgnoreCancelled())
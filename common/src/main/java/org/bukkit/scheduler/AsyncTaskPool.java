@@ -0,0 +1,151 @@
+package org.bukkit.scheduler;
+
+import org.bukkit.Bukkit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+
+/**
+ * Runs the asynchronous tasks of a {@link BukkitScheduler} on an executor,
+ * and keeps track of how many are waiting, which are running and how long they take.
+ * <p>
+ * The default pool is configured with the system properties {@code bukkit.scheduler.async-threads},
+ * the amount of threads of a fixed pool, and {@code bukkit.scheduler.virtual-threads},
+ * to run every task on its own virtual thread when running on Java 21 or newer.
+ */
+public class AsyncTaskPool {
+	private final ExecutorService executor;
+
+	// Task ids mapped to the amount of runs of that task in progress
+	private final Map<Integer, Integer> running = new ConcurrentHashMap<>();
+	private final AtomicInteger queued = new AtomicInteger();
+	private final LongAdder completed = new LongAdder();
+	private final LongAdder totalRunNanos = new LongAdder();
+	private final AtomicLong maxRunNanos = new AtomicLong();
+
+	public AsyncTaskPool(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	public static AsyncTaskPool createDefault() {
+		if (Boolean.getBoolean("bukkit.scheduler.virtual-threads")) {
+			ExecutorService virtual = newVirtualThreadExecutor();
+			if (virtual != null)
+				return new AsyncTaskPool(virtual);
+			Bukkit.getLogger().warning("Virtual threads are not available on this Java version, using a fixed thread pool instead.");
+		}
+
+		int threads = Integer.getInteger("bukkit.scheduler.async-threads", Runtime.getRuntime().availableProcessors());
+		return fixed(Math.max(threads, 1));
+	}
+
+	public static AsyncTaskPool fixed(int threads) {
+		AtomicInteger threadCount = new AtomicInteger();
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+			Thread thread = new Thread(runnable, "Scheduler async worker #" + threadCount.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		});
+		executor.allowCoreThreadTimeOut(true);
+		return new AsyncTaskPool(executor);
+	}
+
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			// Looked up reflectively as this is compiled for Java versions without virtual threads
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException exception) {
+			return null;
+		}
+	}
+
+	void submit(Task task) {
+		if (executor.isShutdown())
+			return;
+		queued.incrementAndGet();
+		try {
+			execute(task);
+		} catch (RejectedExecutionException exception) {
+			// Shut down while submitting
+			queued.decrementAndGet();
+		}
+	}
+
+	private void execute(Task task) {
+		executor.execute(() -> {
+			queued.decrementAndGet();
+			running.merge(task.id, 1, Integer::sum);
+			long start = System.nanoTime();
+			try {
+				task.runnable.run();
+			} catch (Throwable throwable) {
+				Bukkit.getLogger().log(Level.SEVERE, "Asynchronous task " + task.id + " threw an exception", throwable);
+			} finally {
+				long runNanos = System.nanoTime() - start;
+				running.computeIfPresent(task.id, (id, runs) -> runs == 1 ? null : runs - 1);
+				completed.increment();
+				totalRunNanos.add(runNanos);
+				maxRunNanos.accumulateAndGet(runNanos, Math::max);
+			}
+		});
+	}
+
+	public boolean isRunning(int taskID) {
+		return running.containsKey(taskID);
+	}
+
+	/**
+	 * @return the amount of tasks submitted to the pool that haven't started running yet
+	 */
+	public int getQueueDepth() {
+		return queued.get();
+	}
+
+	/**
+	 * @return the amount of tasks currently running
+	 */
+	public int getActiveCount() {
+		int active = 0;
+		for (int runs : running.values())
+			active += runs;
+		return active;
+	}
+
+	public long getCompletedCount() {
+		return completed.sum();
+	}
+
+	public long getAverageRunNanos() {
+		long count = completed.sum();
+		return count == 0 ? 0 : totalRunNanos.sum() / count;
+	}
+
+	public long getMaxRunNanos() {
+		return maxRunNanos.get();
+	}
+
+	/**
+	 * Stops accepting new tasks, and waits for the tasks that were already submitted to finish.
+	 *
+	 * @return whether all tasks finished before the timeout
+	 */
+	public boolean shutdown(long timeout, TimeUnit unit) {
+		executor.shutdown();
+		try {
+			return executor.awaitTermination(timeout, unit);
+		} catch (InterruptedException exception) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+}
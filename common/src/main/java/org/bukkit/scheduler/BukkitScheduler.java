@@ -6,39 +6,63 @@ import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
-import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
 
 public class BukkitScheduler {
-    private final Map<Integer, Task> tasks = new HashMap<>();
-	private final List<Task> priority = new ArrayList<>();
-	private Task currentTask = null;
+	private final Map<Integer, Task> tasks = new ConcurrentHashMap<>();
+	// Scheduled and cancelled tasks from any thread, only the ticking thread touches the wheel
+	private final Queue<Task> submissions = new ConcurrentLinkedQueue<>();
+	private final TimingWheel wheel = new TimingWheel();
+	private final AsyncTaskPool asyncPool;
+	private volatile Task currentTask = null;
 
 	public BukkitScheduler() {
-        Ticker ticker = Bukkit.getTicker();
+		this(AsyncTaskPool.createDefault());
+	}
+
+	public BukkitScheduler(AsyncTaskPool asyncPool) {
+		this.asyncPool = asyncPool;
+		Ticker ticker = Bukkit.getTicker();
 		ticker.initialize(this::tick);
 	}
 
 	public void tick() {
-		for (int taskID : tasks.keySet()) {
-			Task task = tasks.get(taskID);
-			task.ticksLeft--;
-
-			if (task.ticksLeft <= 0) {
-				currentTask = task;
+		Task submitted;
+		while ((submitted = submissions.poll()) != null) {
+			if (submitted.cancelled)
+				wheel.cancel(submitted);
+			else if (submitted.level == -1)
+				wheel.schedule(submitted, wheel.getTick() + Math.max(submitted.delay, 1));
+		}
 
-				if (task.async)
-					new Thread(task.runnable).start();
-				else task.runnable.run();
+		wheel.advance(this::run);
+	}
 
+	private void run(Task task) {
+		if (task.cancelled)
+			return;
+
+		if (task.async) {
+			asyncPool.submit(task);
+		} else {
+			currentTask = task;
+			try {
+				task.runnable.run();
+			} catch (RuntimeException exception) {
+				exception.printStackTrace();
+			} finally {
 				currentTask = null;
-				task.ticksLeft = task.isRepeating() ? task.duration : task.delay;
-
-				if (!task.isRepeating())
-					tasks.remove(taskID);
 			}
 		}
+
+		// The task may have cancelled itself while running
+		if (task.isRepeating() && !task.cancelled)
+			wheel.schedule(task, wheel.getTick() + Math.max(task.duration, 1));
+		else tasks.remove(task.id);
 	}
 
 	public int runTaskLaterAsynchronously(Plugin _plugin, Runnable runnable, long delay) {
@@ -62,15 +86,34 @@ public class BukkitScheduler {
 	}
 
 	public boolean isCurrentlyRunning(int taskID) {
-		if (!tasks.containsKey(taskID))
-			return false;
+		// Async tasks are no longer queued while their last run is in progress
+		if (asyncPool.isRunning(taskID))
+			return true;
+
+		Task task = currentTask;
+		return task != null && task.id == taskID;
+	}
 
-		Task task = tasks.get(taskID);
-		return task.isRepeating() || (!task.async && currentTask == task);
+	public AsyncTaskPool getAsyncPool() {
+		return asyncPool;
+	}
+
+	/**
+	 * Stops running asynchronous tasks, after waiting up to {@code bukkit.scheduler.shutdown-timeout} seconds
+	 * for the ones already submitted to finish.
+	 */
+	public void shutdown() {
+		long timeout = Long.getLong("bukkit.scheduler.shutdown-timeout", 30);
+		if (!asyncPool.shutdown(timeout, TimeUnit.SECONDS))
+			Bukkit.getLogger().warning("Asynchronous tasks were still running " + timeout + " seconds after the scheduler was shut down.");
 	}
 
 	public void cancelTask(int taskID) {
-		tasks.remove(taskID);
+		Task task = tasks.remove(taskID);
+		if (task != null) {
+			task.cancelled = true;
+			submissions.add(task);
+		}
 	}
 
 	public <T> Future<T> callSyncMethod(Plugin _plugin, Callable<T> task) {
@@ -82,6 +125,8 @@ public class BukkitScheduler {
 	private int scheduleTask(Runnable runnable, boolean async, long delay, @Nullable Long duration) {
 		Task task = new Task(runnable, async, delay, duration);
 		tasks.put(task.id, task);
+		// Placed in the wheel at the start of the next tick, so a delay of zero still waits for that tick
+		submissions.add(task);
 		return task.id;
 	}
 }
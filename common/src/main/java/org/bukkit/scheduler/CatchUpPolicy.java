@@ -0,0 +1,36 @@
+package org.bukkit.scheduler;
+
+import org.bukkit.Bukkit;
+
+import java.util.Locale;
+
+/**
+ * What a {@link Ticker} does with the ticks it missed when a tick took too long.
+ */
+public enum CatchUpPolicy {
+	/**
+	 * Drop the missed ticks, and continue at the normal rate.
+	 */
+	SKIP,
+
+	/**
+	 * Run the missed ticks back to back, up to a maximum, and drop the rest.
+	 */
+	BURST;
+
+	/**
+	 * @return the policy set with the {@code bukkit.ticker.catch-up} system property,
+	 * {@link #BURST} by default or if the property isn't a policy
+	 */
+	public static CatchUpPolicy fromProperties() {
+		String policy = System.getProperty("bukkit.ticker.catch-up");
+		if (policy == null)
+			return BURST;
+		try {
+			return valueOf(policy.trim().toUpperCase(Locale.ENGLISH));
+		} catch (IllegalArgumentException e) {
+			Bukkit.getLogger().warning("Unknown catch-up policy '" + policy + "' in bukkit.ticker.catch-up, using " + BURST + " instead.");
+			return BURST;
+		}
+	}
+}
@@ -2,18 +2,70 @@ package org.bukkit.scheduler;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.locks.LockSupport;
 
 public class DefaultTicker implements Ticker {
+	private final TickMetrics metrics = new TickMetrics();
+	private final CatchUpPolicy catchUpPolicy;
+	private final int maxBurst;
+
+	public DefaultTicker() {
+		this(CatchUpPolicy.fromProperties(), Integer.getInteger("bukkit.ticker.max-burst", 20));
+	}
+
+	/**
+	 * @param maxBurst the maximum amount of missed ticks to run back to back with {@link CatchUpPolicy#BURST}
+	 */
+	public DefaultTicker(CatchUpPolicy catchUpPolicy, int maxBurst) {
+		this.catchUpPolicy = catchUpPolicy;
+		this.maxBurst = maxBurst;
+	}
+
 	@Override
 	public void initialize(@NotNull Runnable tick) {
-		Timer tickTimer = new Timer(true);
-		tickTimer.scheduleAtFixedRate(new TimerTask() {
-			@Override
-			public void run() {
+		Runnable measuredTick = metrics.measure(tick);
+		Thread tickThread = new Thread(() -> run(measuredTick), "Ticker");
+		tickThread.setDaemon(true);
+		tickThread.start();
+	}
+
+	private void run(Runnable tick) {
+		long deadline = System.nanoTime();
+		while (true) {
+			long wait = deadline - System.nanoTime();
+			if (wait > 0) {
+				LockSupport.parkNanos(wait);
+				continue;
+			}
+
+			try {
 				tick.run();
+			} catch (RuntimeException exception) {
+				exception.printStackTrace();
 			}
-		}, 0, 50);
+			deadline += TickMetrics.TICK_NANOS;
+
+			// Whole ticks missed on top of the next one, which will run right away
+			long behind = (System.nanoTime() - deadline) / TickMetrics.TICK_NANOS;
+			long allowed = catchUpPolicy == CatchUpPolicy.SKIP ? 0 : maxBurst;
+			if (behind > allowed) {
+				long skipped = behind - allowed;
+				deadline += skipped * TickMetrics.TICK_NANOS;
+				metrics.recordSkipped(skipped);
+			}
+		}
+	}
+
+	@Override
+	public @NotNull TickMetrics getMetrics() {
+		return metrics;
+	}
+
+	public CatchUpPolicy getCatchUpPolicy() {
+		return catchUpPolicy;
+	}
+
+	public int getMaxBurst() {
+		return maxBurst;
 	}
 }
@@ -2,25 +2,30 @@ package org.bukkit.scheduler;
 
 import org.jetbrains.annotations.Nullable;
 
-import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class Task {
-	private static int counter = 0;
+	private static final AtomicInteger counter = new AtomicInteger();
 	public boolean async;
 	public Runnable runnable;
 	public long delay;
 	public @Nullable Long duration;
-	public long ticksLeft;
 	public int id;
+	public volatile boolean cancelled;
+
+	// Position in the scheduler's timing wheel, a level of -1 means the task isn't in the wheel
+	long dueTick;
+	int level = -1;
+	int slot;
+	@Nullable Task previous;
+	@Nullable Task next;
 
 	public Task(Runnable runnable, boolean async, long delay, @Nullable Long duration) {
 		this.delay = delay;
 		this.duration = duration;
-		this.ticksLeft = delay;
-		this.id = counter;
+		this.id = counter.getAndIncrement();
 		this.runnable = runnable;
 		this.async = async;
-		counter++;
 	}
 
 	public boolean isRepeating() {
@@ -0,0 +1,130 @@
+package org.bukkit.scheduler;
+
+import java.util.Arrays;
+
+/**
+ * Keeps a rolling window of tick durations, to report the MSPT (milliseconds per tick) and TPS of a {@link Ticker}.
+ * Ticks are recorded by the ticking thread, and can be queried from any thread.
+ */
+public class TickMetrics {
+	public static final int DEFAULT_WINDOW = 20 * 60;
+	public static final long TICK_NANOS = 50_000_000L;
+
+	/**
+	 * Metrics that ignore the ticks recorded to them, for tickers that don't measure their ticks.
+	 */
+	public static final TickMetrics EMPTY = new TickMetrics(0) {
+		@Override
+		public void record(long startNanos, long durationNanos) {}
+
+		@Override
+		public void recordSkipped(long skippedTicks) {}
+	};
+
+	private final long[] starts;
+	private final long[] durations;
+	private int next = 0;
+	private int size = 0;
+	private long ticks = 0;
+	private long overruns = 0;
+	private long skipped = 0;
+
+	public TickMetrics() {
+		this(DEFAULT_WINDOW);
+	}
+
+	public TickMetrics(int window) {
+		starts = new long[window];
+		durations = new long[window];
+	}
+
+	/**
+	 * @return the given tick, recording how long every run of it takes
+	 */
+	public Runnable measure(Runnable tick) {
+		return () -> {
+			long start = System.nanoTime();
+			try {
+				tick.run();
+			} finally {
+				record(start, System.nanoTime() - start);
+			}
+		};
+	}
+
+	public synchronized void record(long startNanos, long durationNanos) {
+		starts[next] = startNanos;
+		durations[next] = durationNanos;
+		next = (next + 1) % durations.length;
+		if (size < durations.length)
+			size++;
+		ticks++;
+		if (durationNanos > TICK_NANOS)
+			overruns++;
+	}
+
+	public synchronized void recordSkipped(long skippedTicks) {
+		skipped += skippedTicks;
+	}
+
+	/**
+	 * @return the ticks per second over the window, or 20 if not enough ticks have been recorded yet
+	 */
+	public synchronized double getTps() {
+		if (size < 2)
+			return 1_000_000_000.0 / TICK_NANOS;
+		int first = size < starts.length ? 0 : next;
+		int last = (next - 1 + starts.length) % starts.length;
+		long elapsed = starts[last] - starts[first];
+		return elapsed <= 0 ? 1_000_000_000.0 / TICK_NANOS : (size - 1) * 1_000_000_000.0 / elapsed;
+	}
+
+	/**
+	 * @return the average tick duration over the window, in milliseconds
+	 */
+	public synchronized double getMspt() {
+		if (size == 0)
+			return 0;
+		long total = 0;
+		for (int i = 0; i < size; i++)
+			total += durations[i];
+		return total / (size * 1_000_000.0);
+	}
+
+	/**
+	 * @param percentile the percentile, between 0 and 100
+	 * @return the tick duration at the given percentile of the window, in milliseconds
+	 */
+	public double getMsptPercentile(double percentile) {
+		long[] sorted;
+		synchronized (this) {
+			if (size == 0)
+				return 0;
+			sorted = Arrays.copyOf(durations, size);
+		}
+		Arrays.sort(sorted);
+		int index = (int) Math.ceil(Math.max(0, Math.min(100, percentile)) / 100 * sorted.length) - 1;
+		return sorted[Math.max(index, 0)] / 1_000_000.0;
+	}
+
+	/**
+	 * @return the amount of ticks run since the ticker started
+	 */
+	public synchronized long getTickCount() {
+		return ticks;
+	}
+
+	/**
+	 * @return the amount of ticks that took longer than {@link #TICK_NANOS}
+	 */
+	public synchronized long getOverrunCount() {
+		return overruns;
+	}
+
+	/**
+	 * @return the amount of ticks that were dropped instead of caught up on
+	 */
+	public synchronized long getSkippedCount() {
+		return skipped;
+	}
+}
@@ -4,4 +4,11 @@ import org.jetbrains.annotations.NotNull;
 
 public interface Ticker {
 	void initialize(@NotNull Runnable tick);
+
+	/**
+	 * @return the metrics of the ticks run by this ticker, empty metrics if it doesn't record any
+	 */
+	default @NotNull TickMetrics getMetrics() {
+		return TickMetrics.EMPTY;
+	}
 }
@@ -0,0 +1,154 @@
+package org.bukkit.scheduler;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.util.function.Consumer;
+
+/**
+ * A hierarchical timing wheel of {@link Task}s, ordered by the tick they are due on.
+ * <p>
+ * Each level has {@link #SLOTS} slots, and every slot of a level spans as many ticks as a full rotation of the
+ * level below it. Scheduling and cancelling a task are O(1), and advancing a tick only touches the tasks due on it,
+ * plus a cascade of one higher level slot into the lower levels every {@link #SLOTS} ticks.
+ * <p>
+ * Not thread-safe, all access must happen on the thread that ticks the scheduler.
+ */
+class TimingWheel {
+	private static final int SLOT_BITS = 6;
+	private static final int SLOTS = 1 << SLOT_BITS;
+	private static final int SLOT_MASK = SLOTS - 1;
+	private static final int LEVELS = 4;
+
+	// Tasks due further away than this are parked at the edge of the last level, and checked again when they come down
+	private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+	// The level marking the tasks that are being run in the current tick
+	private static final int DUE_LEVEL = LEVELS;
+
+	private final Task[][] slots = new Task[LEVELS][SLOTS];
+	private @Nullable Task due = null;
+	private long tick = 0;
+	private int size = 0;
+
+	/**
+	 * @return the last tick that was advanced to
+	 */
+	long getTick() {
+		return tick;
+	}
+
+	/**
+	 * @return the amount of tasks in this wheel
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Adds the given task, to be run on the given tick.
+	 * A tick that has already passed will be treated as the next tick.
+	 */
+	void schedule(Task task, long dueTick) {
+		assert task.level == -1 : "task " + task.id + " is already scheduled";
+		task.dueTick = Math.max(dueTick, tick + 1);
+		size++;
+		place(task);
+	}
+
+	/**
+	 * Removes the given task, if it is still in this wheel.
+	 */
+	void cancel(Task task) {
+		if (task.level == -1)
+			return;
+		unlink(task);
+		size--;
+	}
+
+	/**
+	 * Advances the wheel by one tick, passing every task due on that tick to the given consumer.
+	 * Tasks are removed before they are passed on, so the consumer may schedule them again.
+	 */
+	void advance(Consumer<Task> consumer) {
+		long now = tick + 1;
+
+		// Bring down the tasks of the next higher level slot every time a level completes a rotation
+		for (int level = 1; level < LEVELS; level++) {
+			if ((now & ((1L << (SLOT_BITS * level)) - 1)) != 0)
+				break;
+			cascade(level, (int) (now >>> (SLOT_BITS * level)) & SLOT_MASK);
+		}
+
+		// Detach the due tasks before running any of them, they may schedule or cancel tasks themselves
+		int slot = (int) now & SLOT_MASK;
+		Task task = slots[0][slot];
+		slots[0][slot] = null;
+		for (Task current = task; current != null; current = current.next)
+			current.level = DUE_LEVEL;
+		due = task;
+		tick = now;
+
+		while ((task = due) != null) {
+			unlink(task);
+			if (task.dueTick > now) {
+				// Parked because it was too far away, place it again now that it's closer
+				place(task);
+				continue;
+			}
+			size--;
+			consumer.accept(task);
+		}
+	}
+
+	private void cascade(int level, int slot) {
+		Task task = slots[level][slot];
+		slots[level][slot] = null;
+		while (task != null) {
+			Task next = task.next;
+			task.level = -1;
+			task.next = null;
+			task.previous = null;
+			place(task);
+			task = next;
+		}
+	}
+
+	private void place(Task task) {
+		// Relative to the next tick that will be advanced to, as that's the first slot that can still be reached
+		long next = tick + 1;
+		long delta = Math.min(task.dueTick - next, MAX_DELTA);
+		long target = next + delta;
+
+		int level = 0;
+		while (level < LEVELS - 1 && delta >= 1L << (SLOT_BITS * (level + 1)))
+			level++;
+
+		int slot = (int) (target >>> (SLOT_BITS * level)) & SLOT_MASK;
+		Task head = slots[level][slot];
+		task.level = level;
+		task.slot = slot;
+		task.previous = null;
+		task.next = head;
+		if (head != null)
+			head.previous = task;
+		slots[level][slot] = task;
+	}
+
+	private void unlink(Task task) {
+		Task previous = task.previous;
+		Task next = task.next;
+		if (previous != null) {
+			previous.next = next;
+		} else if (task.level == DUE_LEVEL) {
+			due = next;
+		} else {
+			slots[task.level][task.slot] = next;
+		}
+		if (next != null)
+			next.previous = previous;
+
+		task.level = -1;
+		task.next = null;
+		task.previous = null;
+	}
+}
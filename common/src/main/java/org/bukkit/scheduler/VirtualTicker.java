@@ -0,0 +1,54 @@
+package org.bukkit.scheduler;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A {@link Ticker} driven by a virtual clock: ticks only happen when {@link #advance(long)} or
+ * {@link #advanceTo(long)} is called, and run back to back on the calling thread without waiting for wall-clock time.
+ * <p>
+ * Useful to replay long stretches of scheduled work in a fraction of the time, e.g. for benchmarks and load tests.
+ * Only the scheduler's notion of time is virtual, wall-clock readings such as dates are unaffected.
+ */
+public class VirtualTicker implements Ticker {
+	private final TickMetrics metrics = new TickMetrics();
+	private Runnable tick = null;
+	private long currentTick = 0;
+
+	@Override
+	public synchronized void initialize(@NotNull Runnable tick) {
+		if (this.tick != null)
+			throw new IllegalStateException("This ticker has already been initialized");
+		this.tick = metrics.measure(tick);
+	}
+
+	/**
+	 * Runs the given amount of ticks.
+	 */
+	public synchronized void advance(long ticks) {
+		if (tick == null)
+			throw new IllegalStateException("This ticker has not been initialized yet");
+		for (long i = 0; i < ticks; i++) {
+			currentTick++;
+			tick.run();
+		}
+	}
+
+	/**
+	 * Runs ticks until the given tick has been reached, does nothing if it already has.
+	 */
+	public synchronized void advanceTo(long targetTick) {
+		advance(targetTick - currentTick);
+	}
+
+	/**
+	 * @return the amount of ticks run so far, including the one currently running
+	 */
+	public synchronized long getCurrentTick() {
+		return currentTick;
+	}
+
+	@Override
+	public @NotNull TickMetrics getMetrics() {
+		return metrics;
+	}
+}
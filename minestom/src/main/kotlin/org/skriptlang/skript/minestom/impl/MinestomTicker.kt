@@ -2,13 +2,20 @@ package org.skriptlang.skript.minestom.impl
 
 import net.minestom.server.MinecraftServer
 import net.minestom.server.timer.TaskSchedule
+import org.bukkit.scheduler.TickMetrics
 import org.bukkit.scheduler.Ticker
 
 object MinestomTicker : Ticker {
+	// Catching up on missed ticks is left to Minestom's own tick loop
+	private val tickMetrics = TickMetrics()
+
 	override fun initialize(tick: Runnable) {
+		val measuredTick = tickMetrics.measure(tick)
 		MinecraftServer.getSchedulerManager().submitTask {
-			tick.run()
+			measuredTick.run()
 			TaskSchedule.nextTick()
 		}
 	}
-}
\ No newline at end of file
+
+	override fun getMetrics(): TickMetrics = tickMetrics
+}
@@ -1,5 +1,6 @@
 package org.skriptlang.skript.minestom.impl
 
+import org.bukkit.scheduler.TickMetrics
 import org.bukkit.scheduler.Ticker
 
 class ProxyTicker(
@@ -12,4 +13,7 @@ class ProxyTicker(
 			tick.run()
 		}
 	}
-}
\ No newline at end of file
+
+	// The wrapped ticker measures onTick as part of the tick
+	override fun getMetrics(): TickMetrics = ticker.metrics
+}